@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.listener;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.Error;
+import gov.nasa.jpf.JPF;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * delta-debugging minimizer for the choice path of a conflict (see the options conflict_choices and replay_choices
+ * of DPORStateReducerWithSummary)
+ *
+ * The minimizer runs ddmin on the event choices of the path (the boolean choices are always kept, and the interval
+ * choices are kept or dropped with the event before them): every candidate subsequence is replayed by
+ * DPORStateReducerWithSummary, and it is kept if JPF still finds the conflict. Candidates of one ddmin step are
+ * replayed in parallel by worker processes; each worker is one warm JVM that runs JPF for one candidate after another.
+ * The result is a 1-minimal path written next to the input path (with the suffix .min).
+ *
+ * Usage: ConflictMinimizer <number of workers> <choice path file> <JPF arguments, e.g., main.jpf>
+ */
+public class ConflictMinimizer {
+
+  private static final String WORKER_OPTION = "-worker";
+  private static final String RESULT_MARKER = "==> MINIMIZER RESULT: ";
+  private static final String CONFLICT_MESSAGE = "Conflict found between the two apps.";
+
+  private final List<String> lines;         // Lines of the choice path
+  private final int[] eventLines;           // Indexes of the event choice lines
+  private final File workDir;
+  private final BlockingQueue<Worker> idleWorkers;
+  private final ExecutorService executor;
+  private final HashMap<String, Boolean> resultCache;
+  private int numOfCandidates;
+
+  public ConflictMinimizer(String choicesFile, int numOfWorkers, String[] jpfArgs) throws IOException {
+    lines = Files.readAllLines(Paths.get(choicesFile));
+    ArrayList<Integer> events = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+      if (lines.get(i).startsWith("int ")) {
+        events.add(i);
+      }
+    }
+    eventLines = new int[events.size()];
+    for (int i = 0; i < eventLines.length; i++) {
+      eventLines[i] = events.get(i);
+    }
+    workDir = Files.createTempDirectory("conflict-minimizer").toFile();
+    idleWorkers = new ArrayBlockingQueue<>(numOfWorkers);
+    for (int i = 0; i < numOfWorkers; i++) {
+      idleWorkers.add(new Worker(jpfArgs));
+    }
+    executor = Executors.newFixedThreadPool(numOfWorkers);
+    resultCache = new HashMap<>();
+    numOfCandidates = 0;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals(WORKER_OPTION)) {
+      runWorker(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length < 3) {
+      System.out.println("Usage: ConflictMinimizer <number of workers> <choice path file> <JPF arguments>");
+      return;
+    }
+    ConflictMinimizer minimizer = new ConflictMinimizer(args[1], Integer.parseInt(args[0]),
+            Arrays.copyOfRange(args, 2, args.length));
+    try {
+      minimizer.minimize(args[1] + ".min");
+    } finally {
+      minimizer.shutdown();
+    }
+  }
+
+  // Run ddmin on the event choices and write the 1-minimal path
+  public void minimize(String minimizedFile) throws IOException, InterruptedException, ExecutionException {
+    int[] events = new int[eventLines.length];
+    for (int i = 0; i < events.length; i++) {
+      events[i] = i;
+    }
+    System.out.println("==> Minimizing " + events.length + " event choices ...");
+    if (!test(Arrays.asList(events)).get(0)) {
+      System.out.println("==> The conflict is not reproduced by the full path: nothing to minimize");
+      return;
+    }
+    int granularity = 2;
+    while (events.length >= 2) {
+      int[][] subsets = split(events, granularity);
+      int[][] complements = new int[subsets.length][];
+      for (int i = 0; i < subsets.length; i++) {
+        complements[i] = complement(events, subsets[i]);
+      }
+      // Reduce to a subset, otherwise to a complement (the lowest index wins to keep the result deterministic)
+      int reduced = firstConflict(test(Arrays.asList(subsets)));
+      if (reduced >= 0) {
+        events = subsets[reduced];
+        granularity = 2;
+        report(events, "subset " + reduced + " of " + subsets.length);
+        continue;
+      }
+      reduced = granularity > 2 ? firstConflict(test(Arrays.asList(complements))) : -1;
+      if (reduced >= 0) {
+        events = complements[reduced];
+        granularity = Math.max(granularity - 1, 2);
+        report(events, "complement " + reduced + " of " + complements.length);
+        continue;
+      }
+      if (granularity >= events.length) {
+        break;
+      }
+      granularity = Math.min(granularity * 2, events.length);
+    }
+    writeCandidate(events, new File(minimizedFile));
+    System.out.println("==> 1-minimal path with " + events.length + " of " + eventLines.length +
+            " event choices (" + numOfCandidates + " candidates replayed): " + minimizedFile);
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+    for (Worker worker : idleWorkers) {
+      worker.destroy();
+    }
+    // Candidates still being replayed at the shutdown are left in the work directory
+    File[] candidateFiles = workDir.listFiles();
+    if (candidateFiles != null) {
+      for (File candidateFile : candidateFiles) {
+        candidateFile.delete();
+      }
+    }
+    workDir.delete();
+  }
+
+  private void report(int[] events, String step) {
+    StringBuilder sb = new StringBuilder();
+    for (int event : events) {
+      sb.append(' ').append(lines.get(eventLines[event]).substring(4));
+    }
+    System.out.println("==> Reduced to " + events.length + " event choices (" + step + "):" + sb);
+  }
+
+  private static int firstConflict(List<Boolean> results) {
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int[][] split(int[] events, int granularity) {
+    int[][] subsets = new int[granularity][];
+    int start = 0;
+    for (int i = 0; i < granularity; i++) {
+      int end = start + (events.length - start) / (granularity - i);
+      subsets[i] = Arrays.copyOfRange(events, start, end);
+      start = end;
+    }
+    return subsets;
+  }
+
+  private static int[] complement(int[] events, int[] subset) {
+    int[] rest = new int[events.length - subset.length];
+    int idx = 0;
+    for (int event : events) {
+      if (Arrays.binarySearch(subset, event) < 0) {
+        rest[idx++] = event;
+      }
+    }
+    return rest;
+  }
+
+  // Replay the candidates in parallel (a candidate that has been replayed before is not replayed again)
+  private List<Boolean> test(List<int[]> candidates) throws InterruptedException, ExecutionException {
+    ArrayList<Future<Boolean>> futures = new ArrayList<>();
+    for (int[] candidate : candidates) {
+      String key = Arrays.toString(candidate);
+      Boolean result = resultCache.get(key);
+      if (result != null) {
+        futures.add(null);
+      } else {
+        futures.add(executor.submit(() -> replay(candidate)));
+      }
+    }
+    ArrayList<Boolean> results = new ArrayList<>();
+    for (int i = 0; i < candidates.size(); i++) {
+      String key = Arrays.toString(candidates.get(i));
+      if (futures.get(i) != null) {
+        resultCache.put(key, futures.get(i).get());
+        numOfCandidates++;
+      }
+      results.add(resultCache.get(key));
+    }
+    return results;
+  }
+
+  private boolean replay(int[] candidate) throws IOException, InterruptedException {
+    File candidateFile = File.createTempFile("candidate", ".choices", workDir);
+    try {
+      writeCandidate(candidate, candidateFile);
+      Worker worker = idleWorkers.take();
+      try {
+        return worker.replay(candidateFile);
+      } finally {
+        idleWorkers.put(worker);
+      }
+    } finally {
+      candidateFile.delete();
+    }
+  }
+
+  // Write the boolean choices and the event choices of the candidate in the order of the path
+  // The interval choices belong to the event before them (they are made while it runs): they are kept or dropped
+  // together with their event
+  private void writeCandidate(int[] candidate, File candidateFile) throws IOException {
+    boolean[] isKept = new boolean[lines.size()];
+    for (int event : candidate) {
+      isKept[eventLines[event]] = true;
+    }
+    boolean isEventKept = true;
+    for (int i = 0; i < lines.size(); i++) {
+      if (lines.get(i).startsWith("int ")) {
+        isEventKept = isKept[i];
+      } else {
+        isKept[i] = !lines.get(i).startsWith("interval ") || isEventKept;
+      }
+    }
+    try (PrintWriter writer = new PrintWriter(candidateFile)) {
+      for (int i = 0; i < lines.size(); i++) {
+        if (isKept[i]) {
+          writer.println(lines.get(i));
+        }
+      }
+    }
+  }
+
+  // A worker runs JPF in one JVM for every candidate path it reads from the standard input
+  private static void runWorker(String[] jpfArgs) throws IOException {
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    String candidateFile;
+    while ((candidateFile = in.readLine()) != null) {
+      Config config = JPF.createConfig(jpfArgs);
+      config.setProperty("replay_choices", candidateFile);
+      config.setProperty("printout_state_transition", "false");
+      config.setProperty("conflict_choices", "");
+      boolean isConflictFound;
+      try {
+        JPF jpf = new JPF(config);
+        jpf.run();
+        isConflictFound = isConflict(jpf);
+      } catch (RuntimeException e) {
+        isConflictFound = false;
+      }
+      System.out.println(RESULT_MARKER + isConflictFound);
+      System.out.flush();
+    }
+  }
+
+  // Only the conflict reported by the conflict tracker counts, not any other error found on the replayed path
+  private static boolean isConflict(JPF jpf) {
+    if (!jpf.foundErrors()) {
+      return false;
+    }
+    for (Error error : jpf.getSearchErrors()) {
+      String details = error.getDetails();
+      if (details != null && details.contains(CONFLICT_MESSAGE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // This class is the handle of a worker process
+  private static class Worker {
+    private final Process process;
+    private final PrintWriter in;
+    private final BufferedReader out;
+
+    public Worker(String[] jpfArgs) throws IOException {
+      ArrayList<String> command = new ArrayList<>();
+      command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+      command.add("-classpath");
+      command.add(System.getProperty("java.class.path"));
+      command.add(ConflictMinimizer.class.getName());
+      command.add(WORKER_OPTION);
+      command.addAll(Arrays.asList(jpfArgs));
+      process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      in = new PrintWriter(process.getOutputStream(), true);
+      out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    }
+
+    // Replay one candidate: the output of JPF is skipped up to the result marker
+    public boolean replay(File candidateFile) throws IOException {
+      in.println(candidateFile.getAbsolutePath());
+      String line;
+      while ((line = out.readLine()) != null) {
+        if (line.startsWith(RESULT_MARKER)) {
+          return Boolean.parseBoolean(line.substring(RESULT_MARKER.length()));
+        }
+      }
+      throw new IOException("worker process terminated");
+    }
+
+    public void destroy() {
+      in.close();
+      process.destroy();
+    }
+  }
+}
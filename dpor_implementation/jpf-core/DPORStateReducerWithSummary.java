@@ -19,6 +19,7 @@ package gov.nasa.jpf.listener;
 
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.ListenerAdapter;
 import gov.nasa.jpf.jvm.bytecode.INVOKEINTERFACE;
 import gov.nasa.jpf.jvm.bytecode.JVMFieldInstruction;
@@ -27,14 +28,41 @@ import gov.nasa.jpf.search.Search;
 import gov.nasa.jpf.vm.*;
 import gov.nasa.jpf.vm.bytecode.ReadInstruction;
 import gov.nasa.jpf.vm.bytecode.WriteInstruction;
+import gov.nasa.jpf.vm.choice.DporIntChoiceGenerator;
 import gov.nasa.jpf.vm.choice.IntChoiceFromSet;
 import gov.nasa.jpf.vm.choice.IntIntervalGenerator;
 
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
 
 /**
  * This a DPOR implementation for event-driven applications with loops that create cycles of state matching
@@ -49,17 +77,35 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   private long timeout;
   private boolean verboseMode;
   private boolean stateReductionMode;
+  private boolean reclamationMode;
+  private boolean eventEquivalenceMode;
+  private boolean anytimeMode;
+  private boolean restoreAwareMode;
+  private boolean roundReuseMode;
+  private boolean pipelinedMode;
+  private boolean replayMode;
+  private boolean gatedDispatchMode;
+  private int maxExecutions;    // Budgets for the anytime mode (0 means no budget)
+  private int maxTransitions;
+  private long maxTime;
+  private String budgetExhausted;
+  private MemoryGovernor memoryGovernor;  // Degrades the analysis under memory pressure (null if not active)
+  private int memoryThreshold;            // Heap occupancy (in percent) that triggers the next degradation step
+  private String conflictChoicesFile;   // The choice path of the first conflict is written into this file
+  private ChoicePath replayPath;
+  private ChoiceGenerator<?> replayedCG;   // Boolean or interval CG that is advanced to the replayed value
+  private int replayedValue;
+  private String replayStopped;
+  private int numOfLearningExecutions;
   private final PrintWriter out;
   private PrintWriter fileWriter;
-  private String detail;
-  private int depth;
-  private int id;
-  private Transition transition;
+  private TraceLogger traceLogger;    // State events of the verbose mode are logged asynchronously
+  private TraceRecorder traceRecorder;  // Binary log of the search events for offline analysis
 
   // DPOR-related fields
   // Basic information
-  private Integer[] choices;
-  private Integer[] refChoices; // Second reference to a copy of choices (choices may be modified for fair scheduling)
+  private int[] choices;
+  private int[] refChoices;     // Second reference to a copy of choices (choices may be modified for fair scheduling)
   private int choiceCounter;
   private int maxEventChoice;
   // Data structure to track the events seen by each state to track cycles (containing all events) for termination
@@ -69,16 +115,40 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   private HashSet<ClassInfo> nonRelevantClasses;// Class info objects of non-relevant classes
   private HashSet<FieldInfo> nonRelevantFields; // Field info objects of non-relevant fields
   private HashSet<FieldInfo> relevantFields;    // Field info objects of relevant fields
+  private HashSet<Instruction> nonRelevantInvokes;  // INVOKEINTERFACE instructions that cannot access properties
+  private HashSet<Instruction> relevantInvokes;     // INVOKEINTERFACE instructions of property accesses
+  private HashMap<FieldInfo, Integer> fieldInfoToIdMap; // Field IDs used in R/W sets (interned full field names)
+  private HashMap<String, Integer> fieldNameToIdMap;
+  private ArrayList<String> fieldNames;         // Full field names indexed by field ID
   private HashMap<Integer, HashSet<Integer>> stateToEventMap;       // Map state ID to events
   // Data structure to analyze field Read/Write accesses and conflicts
   private HashMap<Integer, LinkedList<BacktrackExecution>> backtrackMap;  // Track created backtracking points
-  private PriorityQueue<Integer> backtrackStateQ;                 // Heap that returns the latest state
+  private BacktrackStateQueue backtrackStateQ;                    // Heap that returns the next state to explore
+  private BacktrackStatePriority backtrackStatePriority;          // Exploration order of states in backtrackStateQ
   private Execution currentExecution;                             // Holds the information about the current execution
+  private Execution firstExecution;                               // The first execution of the current boolean CG round
+  private RoundSeeds roundSeeds;                                  // Seeds from the first round (null if not seeding)
+  // Pipelined analysis: the backtrack sets of a completed transition are updated by a background thread
+  private ThreadPoolExecutor analysisExecutor;                    // Single analysis thread with a bounded queue
+  private ReentrantLock analysisLock;                             // Guards the analysis data structures
+  private Future<?> lastAnalysisTask;                             // The last analysis handed over (FIFO order)
+  private volatile RuntimeException analysisFailure;              // The first exception thrown by the analysis
+  private Runnable pendingAnalysisTask;                           // Task to hand over after releasing the lock
+  private HashMap<Integer, ReadWriteSet> pendingRWFieldsMap;      // R/W sets of the current transition to publish
+  private int snapshotExecutionId;                                // The backward DFS only follows predecessors
+  private int snapshotChoice;                                     // recorded before this execution and choice
   private HashMap<Integer, HashSet<Integer>> doneBacktrackMap;    // Record state ID and trace already constructed
   private MainSummary mainSummary;                                // Main summary (M) for state ID, event, and R/W set
   private HashMap<Integer, PredecessorInfo> stateToPredInfo;      // Predecessor info indexed by state ID
+  private ArrayList<Execution> executionList;                     // Executions indexed by execution ID
   private HashMap<Integer, RestorableVMState> restorableStateMap; // Maps state IDs to the restorable state object
+  private HashMap<Integer, int[]> restoreCostMap;                 // Maps state IDs to the heap size and depth
+  private int lastBacktrackStateId;                               // State of the last backtrack point explored
   private RGraph rGraph;                                          // R-Graph for past executions
+  private EventClasses eventClasses;                              // Equivalence classes of events
+  private boolean isWriteWriteConflict;                           // Type of the last conflict found
+  private StaticFootprints staticFootprints;                      // Static footprints of events (null if not given)
+  private WakeupTreeEngine wakeupTreeEngine;                    // Wakeup trees (null for the default engine)
 
   // Boolean states
   private boolean isBooleanCGFlipped;
@@ -87,16 +157,84 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
 
   // Statistics
   private int numOfTransitions;
-  private HashMap<Integer, HashSet<Integer>> stateToUniqueTransMap;
+  private UniqueTransitionCounter uniqueTransitionCounter;
+  private int sketchPrecision;              // The unique transitions are approximated with 2^precision registers
+  private int numOfReclaimedExecutions;
+  private int numOfReclaimedPredecessors;
+  private long numOfReclaimedBytes;
+  private int numOfCollapsedBacktrackPoints;
+  private long timeToFirstConflict;
+  private int numOfStaticallyIndependentPairs;
+  private int numOfRestores;
+  private int numOfSeededBacktrackPoints;
+  private int numOfPipelinedAnalyses;
+  private int numOfAnalysisDrains;
+  private String roundDivergence;
+  private long restoreTime;
+  private boolean isRestorableStateMapShrunk;
+  private int numOfLostBacktrackPoints;
+  private long numOfInstructions;
+  private long numOfAnalyzedInstructions;
+  private int numOfExecutions;
 
   public DPORStateReducerWithSummary(Config config, JPF jpf) {
     verboseMode = config.getBoolean("printout_state_transition", false);
     stateReductionMode = config.getBoolean("activate_state_reduction", true);
+    reclamationMode = config.getBoolean("reclaim_executions", false);
+    restoreAwareMode = config.getBoolean("restore_aware_scheduling", false);
+    roundReuseMode = config.getBoolean("reuse_across_rounds", false);
+    pipelinedMode = config.getBoolean("pipelined_analysis", false);
+    // The replay mode executes a recorded choice path without DPOR (the backtracking is disabled)
+    String replayFile = config.getString("replay_choices", "");
+    replayMode = !replayFile.isEmpty();
+    if (replayMode) {
+      replayPath = new ChoicePath(replayFile);
+      stateReductionMode = false;
+    }
+    conflictChoicesFile = config.getString("conflict_choices", "");
+    // Only field instructions and INVOKEINTERFACE reach the DPOR bookkeeping (the timeout is checked periodically)
+    gatedDispatchMode = config.getBoolean("gated_instruction_dispatch", true);
+    if (pipelinedMode) {
+      // The producer blocks when the queue is full so that the analysis is still done in order
+      analysisExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(config.getInt("analysis_queue_size", 64)), runnable -> {
+                Thread thread = new Thread(runnable, "dpor-analysis");
+                thread.setDaemon(true);
+                return thread;
+              }, (runnable, executor) -> {
+                try {
+                  executor.getQueue().put(runnable);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              });
+      analysisLock = new ReentrantLock();
+      pendingRWFieldsMap = new HashMap<>();
+    }
+    snapshotExecutionId = Integer.MAX_VALUE;
+    snapshotChoice = Integer.MAX_VALUE;
+    eventEquivalenceMode = config.getBoolean("event_equivalence", false);
+    numOfLearningExecutions = config.getInt("event_equivalence_learning_executions", 10);
+    backtrackStatePriority = createBacktrackStatePriority(config.getString("backtrack_state_order", "highest_state_id"),
+            config.getString("event_app_map", ""));
     if (verboseMode) {
-      out = new PrintWriter(System.out, true);
+      int traceLevel = parseTraceLevel(config.getString("trace_level", "debug"));
+      String traceLogFile = config.getString("trace_file", "");
+      if (traceLevel != TRACE_LEVEL_OFF) {
+        traceLogger = new TraceLogger(traceLogFile, traceLevel,
+                config.getInt("trace_sampling", 1), config.getInt("trace_buffer_size", 8192));
+      }
+      if (traceLogger != null && traceLogFile.isEmpty()) {
+        // The direct prints share the standard output with the logger, so they wait for the logged events
+        out = new PrintWriter(traceLogger.getOrderedWriter(), true);
+      } else {
+        out = new PrintWriter(System.out, true);
+      }
     } else {
       out = null;
     }
+    String traceFile = config.getString("exploration_trace", "");
+    traceRecorder = traceFile.isEmpty() ? null : new TraceRecorder(traceFile);
     String outputFile = config.getString("file_output");
     if (!outputFile.isEmpty()) {
       try {
@@ -107,84 +245,171 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     isBooleanCGFlipped = false;
     isNotCheckedForEventsYet = true;
     mainSummary = new MainSummary();
+    roundSeeds = null;
     numOfTransitions = 0;
+    numOfReclaimedExecutions = 0;
+    numOfReclaimedPredecessors = 0;
+    numOfReclaimedBytes = 0;
+    numOfCollapsedBacktrackPoints = 0;
+    timeToFirstConflict = -1;
+    numOfStaticallyIndependentPairs = 0;
+    numOfRestores = 0;
+    numOfSeededBacktrackPoints = 0;
+    numOfPipelinedAnalyses = 0;
+    numOfAnalysisDrains = 0;
+    roundDivergence = null;
+    restoreTime = 0;
     nonRelevantClasses = new HashSet<>();
     nonRelevantFields = new HashSet<>();
     relevantFields = new HashSet<>();
+    nonRelevantInvokes = new HashSet<>();
+    relevantInvokes = new HashSet<>();
+    fieldInfoToIdMap = new HashMap<>();
+    fieldNameToIdMap = new HashMap<>();
+    fieldNames = new ArrayList<>();
     restorableStateMap = new HashMap<>();
+    restoreCostMap = new HashMap<>();
+    lastBacktrackStateId = -1;
     stateToPredInfo = new HashMap<>();
-    stateToUniqueTransMap = new HashMap<>();
+    executionList = new ArrayList<>();
+    // Exact counts need memory in the number of states, while the sketch has a fixed size
+    sketchPrecision = config.getInt("unique_transitions_sketch_precision", 14);
+    uniqueTransitionCounter = config.getBoolean("unique_transitions_sketch", false) ?
+            new SketchedUniqueTransitionCounter(sketchPrecision) : new ExactUniqueTransitionCounter();
+    String footprintFile = config.getString("event_footprints", "");
+    staticFootprints = footprintFile.isEmpty() ? null : new StaticFootprints(footprintFile);
+    // Events keep the same IDs when the boolean CG is flipped, so the classes are kept
+    eventClasses = new EventClasses();
+    wakeupTreeEngine = createDporEngine(config.getString("dpor_engine", "summary"));
+    numOfExecutions = 0;
     initializeStatesVariables();
 
     // Timeout input from config is in minutes, so we need to convert into millis
     timeout = config.getInt("timeout", 0) * 60 * 1000;
     startTime = System.currentTimeMillis();
+    // In the anytime mode we stop gracefully when a budget runs out (the timeout also becomes a time budget)
+    anytimeMode = config.getBoolean("anytime_mode", false);
+    maxExecutions = config.getInt("anytime_max_executions", 0);
+    maxTransitions = config.getInt("anytime_max_transitions", 0);
+    maxTime = config.getLong("anytime_max_time", timeout / (60 * 1000)) * 60 * 1000;
+    budgetExhausted = null;
+    replayStopped = null;
+    // The memory governor applies its degradation steps when the heap occupancy after a collection is too high
+    memoryThreshold = config.getInt("memory_governor_threshold", 85);
+    memoryGovernor = config.getBoolean("memory_governor", false) ? new MemoryGovernor(memoryThreshold) : null;
+    isRestorableStateMapShrunk = false;
+    numOfLostBacktrackPoints = 0;
+    numOfInstructions = 0;
+    numOfAnalyzedInstructions = 0;
   }
 
   @Override
   public void stateRestored(Search search) {
-    if (verboseMode) {
-      id = search.getStateId();
-      depth = search.getDepth();
-      transition = search.getTransition();
-      detail = null;
-      out.println("\n==> DEBUG: The state is restored to state with id: " + id + " -- Transition: " + transition +
-              " and depth: " + depth + "\n");
+    if (traceLogger != null) {
+      traceLogger.log(TRACE_STATE_RESTORED, search.getStateId(), search.getDepth(), 0);
     }
   }
 
   @Override
   public void searchStarted(Search search) {
-    if (verboseMode) {
-      out.println("\n==> DEBUG: ----------------------------------- search started" + "\n");
+    if (traceLogger != null) {
+      traceLogger.log(TRACE_SEARCH_STARTED, 0, 0, 0);
     }
   }
 
   @Override
   public void stateAdvanced(Search search) {
-    if (verboseMode) {
-      id = search.getStateId();
-      depth = search.getDepth();
-      transition = search.getTransition();
-      if (search.isNewState()) {
-        detail = "new";
-      } else {
-        detail = "visited";
-      }
-
+    if (traceLogger != null) {
+      int flags = search.isNewState() ? TRACE_FLAG_NEW : 0;
       if (search.isEndState()) {
-        out.println("\n==> DEBUG: This is the last state!\n");
-        detail += " end";
+        traceLogger.log(TRACE_END_STATE, 0, 0, 0);
+        flags |= TRACE_FLAG_END;
       }
-      out.println("\n==> DEBUG: The state is forwarded to state with id: " + id + " with depth: " + depth +
-              " which is " + detail + " Transition: " + transition + "\n");
+      traceLogger.log(TRACE_STATE_ADVANCED, search.getStateId(), search.getDepth(), flags);
+    }
+    if (traceRecorder != null) {
+      traceRecorder.recordStateAdvanced(search.getStateId(), search.getDepth(),
+              (search.isNewState() ? DporTraceReader.FLAG_NEW : 0) | (search.isEndState() ? DporTraceReader.FLAG_END : 0));
     }
     if (stateReductionMode) {
-      updateStateInfo(search);
+      if (pipelinedMode) {
+        analysisLock.lock();
+        try {
+          updateStateInfo(search);
+        } finally {
+          analysisLock.unlock();
+        }
+      } else {
+        updateStateInfo(search);
+      }
     }
   }
 
   @Override
   public void stateBacktracked(Search search) {
-    if (verboseMode) {
-      id = search.getStateId();
-      depth = search.getDepth();
-      transition = search.getTransition();
-      detail = null;
-
-      out.println("\n==> DEBUG: The state is backtracked to state with id: " + id + " -- Transition: " + transition +
-              " and depth: " + depth + "\n");
+    if (traceLogger != null) {
+      traceLogger.log(TRACE_STATE_BACKTRACKED, search.getStateId(), search.getDepth(), 0);
+    }
+    if (traceRecorder != null) {
+      traceRecorder.recordStateBacktracked(search.getStateId(), search.getDepth());
+    }
+    if (replayMode && replayStopped == null) {
+      // The replayed path has ended: there is nothing else to explore
+      stopReplay(search.getVM(), "the path ends after " + replayPath.getIndex() + " choices");
     }
     if (stateReductionMode) {
-      updateStateInfo(search);
+      if (pipelinedMode) {
+        analysisLock.lock();
+        try {
+          updateStateInfo(search);
+        } finally {
+          analysisLock.unlock();
+        }
+      } else {
+        updateStateInfo(search);
+      }
+    }
+  }
+
+  @Override
+  public void propertyViolated(Search search) {
+    // Conflicts are reported as property violations (e.g., by the conflict tracker)
+    if (timeToFirstConflict < 0) {
+      timeToFirstConflict = System.currentTimeMillis() - startTime;
+      // Record the choice path of the conflict so that it can be replayed
+      if (!conflictChoicesFile.isEmpty()) {
+        ChoicePath.write(conflictChoicesFile, search.getVM().getChoiceGenerators());
+      }
+    }
+    if (replayMode && replayStopped == null) {
+      replayStopped = "the conflict is reproduced after " + replayPath.getIndex() + " choices";
     }
   }
 
+  // Unique transitions so far (approximated with unique_transitions_sketch): also readable during the search
+  public long getNumOfUniqueTransitions() {
+    return uniqueTransitionCounter.getNumOfTransitions();
+  }
+
   static Logger log = JPF.getLogger("report");
 
   @Override
   public void searchFinished(Search search) {
+    if (pipelinedMode) {
+      drainAnalysis();
+      analysisExecutor.shutdown();
+    }
+    if (traceRecorder != null) {
+      traceRecorder.close();
+    }
+    if (memoryGovernor != null) {
+      memoryGovernor.close();
+    }
     if (verboseMode) {
+      // Drain the trace before the statistics so that they stay the last lines of the output
+      if (traceLogger != null) {
+        traceLogger.close();
+      }
       int summaryOfUniqueTransitions = summarizeUniqueTransitions();
       out.println("\n==> DEBUG: ----------------------------------- search finished");
       out.println("\n==> DEBUG: State reduction mode                : " + stateReductionMode);
@@ -194,8 +419,68 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
         // Without DPOR we don't have choices being assigned with a CG
         out.println("\n==> DEBUG: Number of events                    : 0");
       }
+      out.println("\n==> DEBUG: Number of executions                : " + numOfExecutions);
       out.println("\n==> DEBUG: Number of transitions               : " + numOfTransitions);
       out.println("\n==> DEBUG: Number of unique transitions (DPOR) : " + summaryOfUniqueTransitions);
+      if (reclamationMode) {
+        out.println("\n==> DEBUG: Number of reclaimed executions      : " + numOfReclaimedExecutions);
+        out.println("\n==> DEBUG: Number of reclaimed predecessors    : " + numOfReclaimedPredecessors);
+        out.println("\n==> DEBUG: Reclaimed memory (estimated bytes)  : " + numOfReclaimedBytes);
+      }
+      if (budgetExhausted != null) {
+        reportCoverage(summaryOfUniqueTransitions);
+      }
+      if (uniqueTransitionCounter instanceof SketchedUniqueTransitionCounter) {
+        out.println("\n==> DEBUG: Unique transitions sketch error    : " + String.format("%.2f%%",
+                ((SketchedUniqueTransitionCounter) uniqueTransitionCounter).getRelativeError() * 100));
+      }
+      if (memoryGovernor != null) {
+        out.println("\n==> DEBUG: Memory governor steps applied      : " + memoryGovernor.getNumOfSteps());
+        out.println("\n==> DEBUG: Backtrack points lost (memory)     : " + numOfLostBacktrackPoints);
+      }
+      if (replayMode) {
+        out.println("\n==> DEBUG: Replayed choices                   : " + replayPath.getIndex() + " of " +
+                replayPath.size());
+        out.println("\n==> DEBUG: Replay result                      : " + replayStopped);
+      }
+      if (roundReuseMode) {
+        out.println("\n==> DEBUG: Number of seeded backtrack points  : " + numOfSeededBacktrackPoints);
+        out.println("\n==> DEBUG: Rounds diverged                    : " +
+                (roundDivergence == null ? "no" : roundDivergence));
+      }
+      if (pipelinedMode) {
+        out.println("\n==> DEBUG: Number of pipelined analyses       : " + numOfPipelinedAnalyses);
+        out.println("\n==> DEBUG: Number of analysis drains          : " + numOfAnalysisDrains);
+      }
+      long elapsedTime = Math.max(System.currentTimeMillis() - startTime, 1);
+      out.println("\n==> DEBUG: Number of instructions            : " + numOfInstructions);
+      out.println("\n==> DEBUG: Number of analyzed instructions   : " + numOfAnalyzedInstructions);
+      out.println("\n==> DEBUG: Instructions per second           : " + (numOfInstructions * 1000 / elapsedTime));
+      out.println("\n==> DEBUG: Number of state restores          : " + numOfRestores);
+      out.println("\n==> DEBUG: Total restore time (ms)           : " + (restoreTime / 1000000));
+      if (staticFootprints != null) {
+        out.println("\n==> DEBUG: Statically independent conflicts   : " + numOfStaticallyIndependentPairs);
+      }
+      if (timeToFirstConflict >= 0) {
+        out.println("\n==> DEBUG: Time to first conflict (ms)        : " + timeToFirstConflict);
+      }
+      if (traceLogger != null) {
+        out.println("\n==> DEBUG: Number of traced state events      : " + traceLogger.getNumOfTracedEvents());
+        out.println("\n==> DEBUG: Number of trace buffer waits       : " + traceLogger.getNumOfWaits());
+      }
+      if (traceRecorder != null) {
+        out.println("\n==> DEBUG: Exploration trace size (bytes)     : " + traceRecorder.getNumOfBytes());
+      }
+      if (wakeupTreeEngine != null) {
+        out.println("\n==> DEBUG: Number of races (wakeup trees)     : " + wakeupTreeEngine.getNumOfRaces());
+        out.println("\n==> DEBUG: Races covered by a wakeup tree     : " + wakeupTreeEngine.getNumOfCoveredRaces());
+        out.println("\n==> DEBUG: Number of wakeup branches          : " + wakeupTreeEngine.getNumOfWakeupBranches());
+      }
+      if (eventEquivalenceMode) {
+        out.println("\n==> DEBUG: Event equivalence classes         : " + eventClasses);
+        out.println("\n==> DEBUG: Number of split events            : " + eventClasses.getNumOfSplitEvents());
+        out.println("\n==> DEBUG: Number of collapsed backtrack pts : " + numOfCollapsedBacktrackPoints);
+      }
       out.println("\n==> DEBUG: ----------------------------------- search finished" + "\n");
 
       fileWriter.println("==> DEBUG: State reduction mode                : " + stateReductionMode);
@@ -214,6 +499,10 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
 
   @Override
   public void choiceGeneratorRegistered(VM vm, ChoiceGenerator<?> nextCG, ThreadInfo currentThread, Instruction executedInstruction) {
+    if (replayMode) {
+      pinReplayedChoice(vm, nextCG);
+      return;
+    }
     if (isNotCheckedForEventsYet) {
       // Check if this benchmark has no events
       if (nextCG instanceof IntChoiceFromSet) {
@@ -230,67 +519,86 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
       // Initialize with necessary information from the CG
       if (nextCG instanceof IntChoiceFromSet) {
         IntChoiceFromSet icsCG = (IntChoiceFromSet) nextCG;
-        // Tell JPF that we are performing DPOR
-        icsCG.setDpor();
         if (!isEndOfExecution) {
           // Check if CG has been initialized, otherwise initialize it
-          Integer[] cgChoices = icsCG.getAllChoices();
           // Record the events (from choices)
           if (choices == null) {
-            choices = cgChoices;
+            choices = toIntChoices(icsCG.getAllChoices());
             // Make a copy of choices as reference
             refChoices = copyChoices(choices);
             // Record the max event choice (the last element of the choice array)
             maxEventChoice = choices[choices.length - 1];
           }
-          icsCG.setNewValues(choices);
-          icsCG.reset();
+          // Tell JPF that we are performing DPOR: the CG takes its choices from the int-array choice generator
+          DporIntChoiceGenerator dporChoices = new DporIntChoiceGenerator(choices);
           // Use a modulo since choiceCounter is going to keep increasing
-          int choiceIndex = choiceCounter % choices.length;
-          icsCG.advance(choices[choiceIndex]);
+          dporChoices.startAt(choiceCounter % choices.length);
+          icsCG.setDporChoices(dporChoices);
         } else {
           // Set done all CGs while transitioning to a new execution
           icsCG.setDone();
         }
+      } else if (nextCG instanceof IntIntervalGenerator && !isEndOfExecution && choiceCounter > 0) {
+        // Resolve the event of the interval CG once, so that instructionExecuted() attributes the instructions
+        // under this CG to the event without walking the CG chain
+        IntIntervalGenerator intervalCG = (IntIntervalGenerator) nextCG;
+        Integer choice = resolveChoiceOfIntervalCG(intervalCG);
+        if (choice != null) {
+          currentExecution.mapCGToChoice(intervalCG, choice);
+        }
       }
     }
   }
 
   @Override
   public void choiceGeneratorAdvanced(VM vm, ChoiceGenerator<?> currentCG) {
+    if (replayMode && currentCG == replayedCG) {
+      checkReplayedChoice(vm);
+    }
     if (stateReductionMode) {
       // Check the boolean CG and if it is flipped, we are resetting the analysis
       if (currentCG instanceof BooleanChoiceGenerator) {
         if (!isBooleanCGFlipped) {
           isBooleanCGFlipped = true;
+        } else if (pipelinedMode) {
+          // The analysis of the first round has to be complete before it is reset
+          drainAnalysis();
+          analysisLock.lock();
+          try {
+            resetAnalysisForNewRound();
+          } finally {
+            analysisLock.unlock();
+          }
         } else {
-          // Allocate new objects for data structure when the boolean is flipped from "false" to "true"
-          initializeStatesVariables();
+          resetAnalysisForNewRound();
         }
       }
       // Check every choice generated and ensure fair scheduling!
       if (currentCG instanceof IntChoiceFromSet) {
         IntChoiceFromSet icsCG = (IntChoiceFromSet) currentCG;
-        // If this is a new CG then we need to update data structures
-        resetStatesForNewExecution(icsCG, vm);
-        // If we don't see a fair scheduling of events/choices then we have to enforce it
-        ensureFairSchedulingAndSetupTransition(icsCG, vm);
-        // Update backtrack set of an executed event (transition): one transition before this one
-        updateBacktrackSet(currentExecution, choiceCounter - 1);
-        // Explore the next backtrack point:
-        // 1) if we have seen this state or this state contains cycles that involve all events, and
-        // 2) after the current CG is advanced at least once
-        if (choiceCounter > 0 && terminateCurrentExecution()) {
-          exploreNextBacktrackPoints(vm, icsCG);
+        if (pipelinedMode) {
+          // The analysis has to be complete if this transition may trigger the analysis of a revisited state
+          // or the end of the execution (both need complete summaries and backtrack sets)
+          boolean isAnalysisDeferred = !isRevisitTriggerPossible();
+          if (!isAnalysisDeferred) {
+            drainAnalysis();
+          }
+          analysisLock.lock();
+          try {
+            publishPendingReadWriteSets();
+            advanceEventChoice(icsCG, vm, isAnalysisDeferred);
+          } finally {
+            analysisLock.unlock();
+          }
+          // Hand over the analysis after releasing the lock (the analysis thread needs the lock)
+          if (pendingAnalysisTask != null) {
+            lastAnalysisTask = analysisExecutor.submit(pendingAnalysisTask);
+            pendingAnalysisTask = null;
+            numOfPipelinedAnalyses++;
+          }
         } else {
-          // We only count IntChoiceFromSet CGs
-          numOfTransitions++;
-          countUniqueTransitions(vm.getStateId(), icsCG.getNextChoice());
+          advanceEventChoice(icsCG, vm, false);
         }
-        // Map state to event
-        mapStateToEvent(icsCG.getNextChoice());
-        justVisitedStates.clear();
-        choiceCounter++;
       }
     } else {
       // We only count IntChoiceFromSet CGs
@@ -302,14 +610,18 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
 
   @Override
   public void instructionExecuted(VM vm, ThreadInfo ti, Instruction nextInsn, Instruction executedInsn) {
-    // Check the timeout
-    if (timeout > 0) {
-      if (System.currentTimeMillis() - startTime > timeout) {
-        StringBuilder sbTimeOut = new StringBuilder();
-        sbTimeOut.append("Execution timeout: " + (timeout / (60 * 1000)) + " minutes have passed!");
-        Instruction nextIns = ti.createAndThrowException("java.lang.RuntimeException", sbTimeOut.toString());
-        ti.setNextPC(nextIns);
+    numOfInstructions++;
+    if (gatedDispatchMode) {
+      // Reading the clock costs more than most bytecodes, so the timeout is only checked periodically
+      if ((numOfInstructions & TIMEOUT_CHECK_MASK) == 0) {
+        checkTimeout(vm, ti);
       }
+      // Only field instructions and INVOKEINTERFACE can produce accesses: the rest skips the DPOR bookkeeping
+      if (!stateReductionMode || isEndOfExecution || isInstructionExcluded(executedInsn)) {
+        return;
+      }
+    } else {
+      checkTimeout(vm, ti);
     }
 
     if (stateReductionMode) {
@@ -321,7 +633,8 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
           if (currentChoice < 0) { // If choice is -1 then skip
             return;
           }
-          currentChoice = checkAndAdjustChoice(currentChoice, vm);
+          currentChoice = checkAndAdjustChoice(currentChoice, cg);
+          numOfAnalyzedInstructions++;
           // Record accesses from executed instructions
           if (executedInsn instanceof JVMFieldInstruction) {
             // We don't care about libraries
@@ -343,24 +656,270 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   // -- INNER CLASSES
 
   // This class compactly stores backtrack execution:
-  // 1) backtrack choice list, and
+  // 1) backtrack choice list as the first choice and a shared reference to the base order of choices, and
   // 2) first backtrack point (linking with predecessor execution)
+  // The choice list is only materialized when the backtrack execution is consumed.
+  // With the wakeup-tree engine, the backtrack execution is a branch of a wakeup tree: the events of its leftmost
+  // path come first, e.g., the path {3, 2} creates the list {3, 2, 1, 0} for the base order {1, 0, 3, 2}.
   private class BacktrackExecution {
-    private Integer[] choiceList;
+    private int[] baseChoices;  // Not modified after creation (it is the refChoices of a past execution)
+    private int firstChoice;
     private TransitionEvent firstTransition;
+    private WakeupNode wakeupBranch;  // Null for the default engine
 
-    public BacktrackExecution(Integer[] choList, TransitionEvent fTransition) {
-      choiceList = choList;
+    public BacktrackExecution(int fChoice, int[] bChoices, TransitionEvent fTransition, WakeupNode wBranch) {
+      baseChoices = bChoices;
+      firstChoice = fChoice;
       firstTransition = fTransition;
+      wakeupBranch = wBranch;
     }
 
-    public Integer[] getChoiceList() {
+    public DporIntChoiceGenerator getChoiceList() {
+      // Put the first choice first and the rest of the choices in the base order, e.g., if the first choice is 3,
+      // then we create the list {3, 1, 0, 2} for the base order {1, 0, 3, 2}
+      DporIntChoiceGenerator choiceList = new DporIntChoiceGenerator(copyChoices(baseChoices));
+      if (wakeupBranch != null) {
+        ArrayList<WakeupNode> path = wakeupBranch.getLeftmostPath();
+        for (int i = path.size() - 1; i > 0; i--) {
+          choiceList.moveToFront(path.get(i).getEvent());
+        }
+      }
+      choiceList.moveToFront(firstChoice);
       return choiceList;
     }
 
+    public int getFirstChoice() {
+      return firstChoice;
+    }
+
     public TransitionEvent getFirstTransition() {
       return firstTransition;
     }
+
+    public WakeupNode getWakeupBranch() {
+      return wakeupBranch;
+    }
+  }
+
+  // This interface defines the order in which states with backtrack points are explored
+  private interface BacktrackStatePriority {
+    // Return true if the state has to be explored before the other state
+    boolean precedes(int stateId, int otherStateId);
+    // Record a new backtrack point for a conflict between two events at the state
+    // Return true if the priority of the state has changed
+    boolean recordBacktrackPoint(int stateId, int eventChoice, int conflictEventChoice, boolean isWriteWrite);
+    // Record a new execution that starts from the state
+    // Return true if the priority of the state has changed
+    boolean recordExploredState(int stateId);
+  }
+
+  // This is the default order: the state with the highest state ID (the latest state) first
+  private static class HighestStateIdFirst implements BacktrackStatePriority {
+    public boolean precedes(int stateId, int otherStateId) {
+      return stateId > otherStateId;
+    }
+
+    public boolean recordBacktrackPoint(int stateId, int eventChoice, int conflictEventChoice, boolean isWriteWrite) {
+      return false;
+    }
+
+    public boolean recordExploredState(int stateId) {
+      return false;
+    }
+  }
+
+  // This is the base of the orders that give each state a score: the state with the highest score first
+  // (the highest state ID first if the scores are the same)
+  private static abstract class HighestScoreFirst implements BacktrackStatePriority {
+    private HashMap<Integer, Integer> stateToScoreMap = new HashMap<>();
+
+    public boolean precedes(int stateId, int otherStateId) {
+      int score = getScore(stateId);
+      int otherScore = getScore(otherStateId);
+      if (score != otherScore) {
+        return score > otherScore;
+      }
+      return stateId > otherStateId;
+    }
+
+    public boolean recordBacktrackPoint(int stateId, int eventChoice, int conflictEventChoice, boolean isWriteWrite) {
+      return false;
+    }
+
+    public boolean recordExploredState(int stateId) {
+      return false;
+    }
+
+    protected int getScore(int stateId) {
+      Integer score = stateToScoreMap.get(stateId);
+      return score == null ? 0 : score;
+    }
+
+    protected void addScore(int stateId, int score) {
+      stateToScoreMap.put(stateId, getScore(stateId) + score);
+    }
+  }
+
+  // The state with the most backtrack points created for write-write conflicts first
+  // Write-write conflicts are the ones reported by the conflict tracker
+  private static class WriteWriteOverlapsFirst extends HighestScoreFirst {
+    public boolean recordBacktrackPoint(int stateId, int eventChoice, int conflictEventChoice, boolean isWriteWrite) {
+      if (isWriteWrite) {
+        addScore(stateId, 1);
+      }
+      return isWriteWrite;
+    }
+  }
+
+  // The state with the most backtrack points created for conflicts between events of different apps first
+  // The app of each event is read from the event-to-app map written by the extractor (one app name per line)
+  private static class CrossAppFirst extends HighestScoreFirst {
+    private String[] eventApps;
+
+    public CrossAppFirst(String[] evtApps) {
+      eventApps = evtApps;
+    }
+
+    public boolean recordBacktrackPoint(int stateId, int eventChoice, int conflictEventChoice, boolean isWriteWrite) {
+      if (eventChoice < eventApps.length && conflictEventChoice < eventApps.length &&
+              !eventApps[eventChoice].equals(eventApps[conflictEventChoice])) {
+        addScore(stateId, 1);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  // The state with the fewest executions started from it first
+  private static class LeastExploredFirst extends HighestScoreFirst {
+    public boolean recordExploredState(int stateId) {
+      // Each explored execution lowers the score
+      addScore(stateId, -1);
+      return true;
+    }
+  }
+
+  // This class is an indexed binary heap of state IDs ordered by a BacktrackStatePriority
+  // The position of every state ID in the heap is indexed, so checking membership is O(1),
+  // and removing a state or updating its priority is O(log n)
+  private static class BacktrackStateQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] heap;                       // State IDs in heap order
+    private int[] positions;                  // Position of each state ID in the heap (-1 if not in the heap)
+    private BacktrackStatePriority priority;
+    private int size;
+
+    public BacktrackStateQueue(BacktrackStatePriority statePriority) {
+      heap = new int[INITIAL_CAPACITY];
+      positions = new int[INITIAL_CAPACITY];
+      Arrays.fill(positions, -1);
+      priority = statePriority;
+      size = 0;
+    }
+
+    public boolean add(int stateId) {
+      if (contains(stateId)) {
+        return false;
+      }
+      if (stateId >= positions.length) {
+        int oldLength = positions.length;
+        positions = Arrays.copyOf(positions, Math.max(oldLength * 2, stateId + 1));
+        Arrays.fill(positions, oldLength, positions.length, -1);
+      }
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, size * 2);
+      }
+      heap[size] = stateId;
+      positions[stateId] = size;
+      siftUp(size++);
+      return true;
+    }
+
+    public boolean contains(int stateId) {
+      return stateId >= 0 && stateId < positions.length && positions[stateId] >= 0;
+    }
+
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    // Return the state ID at this index in heap order (only the state at index 0 is in priority order)
+    public int get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("index " + index + " of " + size + " states");
+      }
+      return heap[index];
+    }
+
+    public int peek() {
+      if (size == 0) {
+        throw new NoSuchElementException("no state with backtrack points");
+      }
+      return heap[0];
+    }
+
+    public boolean remove(int stateId) {
+      if (!contains(stateId)) {
+        return false;
+      }
+      int position = positions[stateId];
+      positions[stateId] = -1;
+      size--;
+      if (position < size) {
+        // Move the last state into the hole and restore the heap order
+        heap[position] = heap[size];
+        positions[heap[position]] = position;
+        siftDown(siftUp(position));
+      }
+      return true;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    // Restore the heap order after the priority of this state has changed
+    public void update(int stateId) {
+      if (contains(stateId)) {
+        siftDown(siftUp(positions[stateId]));
+      }
+    }
+
+    private int siftUp(int position) {
+      int stateId = heap[position];
+      while (position > 0) {
+        int parent = (position - 1) >>> 1;
+        if (!priority.precedes(stateId, heap[parent])) {
+          break;
+        }
+        heap[position] = heap[parent];
+        positions[heap[position]] = position;
+        position = parent;
+      }
+      heap[position] = stateId;
+      positions[stateId] = position;
+      return position;
+    }
+
+    private void siftDown(int position) {
+      int stateId = heap[position];
+      int half = size >>> 1;
+      while (position < half) {
+        int child = 2 * position + 1;
+        if (child + 1 < size && priority.precedes(heap[child + 1], heap[child])) {
+          child++;
+        }
+        if (!priority.precedes(heap[child], stateId)) {
+          break;
+        }
+        heap[position] = heap[child];
+        positions[heap[position]] = position;
+        position = child;
+      }
+      heap[position] = stateId;
+      positions[stateId] = position;
+    }
   }
 
   // This class stores a representation of an execution
@@ -369,16 +928,23 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   // TODO:    (1) last read/write access to each memory location
   // TODO:    (2) last state with two or more incoming events/transitions
   private class Execution {
-    private HashMap<IntChoiceFromSet, Integer> cgToChoiceMap;   // Map between CG to choice numbers for O(1) access
+    private IdentityHashMap<ChoiceGenerator<?>, Integer> cgToChoiceMap; // Map between CG to choice numbers for O(1) access
+    private ChoiceGenerator<?> lastIntervalCG;                  // Last interval CG looked up (and its choice)
+    private int lastIntervalChoice;
     private ArrayList<TransitionEvent> executionTrace;          // The BacktrackPoint objects of this execution
+    private int id;                                             // Execution ID (index in executionList)
     private boolean isNew;                                      // Track if this is the first time it is accessed
     private HashMap<Integer, ReadWriteSet> readWriteFieldsMap;  // Record fields that are accessed
 
     public Execution() {
-      cgToChoiceMap = new HashMap<>();
+      cgToChoiceMap = new IdentityHashMap<>();
       executionTrace = new ArrayList<>();
+      id = executionList.size();
       isNew = true;
       readWriteFieldsMap = new HashMap<>();
+      // Register this execution so that predecessors can refer to it through its ID
+      executionList.add(this);
+      numOfExecutions++;
     }
 
     public void addTransition(TransitionEvent newBacktrackPoint) {
@@ -387,10 +953,26 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
 
     public void clearCGToChoiceMap() {
       cgToChoiceMap = null;
+      lastIntervalCG = null;
+    }
+
+    public Integer getChoiceFromCG(ChoiceGenerator<?> cg) {
+      return cgToChoiceMap.get(cg);
     }
 
-    public int getChoiceFromCG(IntChoiceFromSet icsCG) {
-      return cgToChoiceMap.get(icsCG);
+    // Instructions under the same interval CG are attributed with one comparison
+    public int getChoiceFromIntervalCG(IntIntervalGenerator intervalCG) {
+      if (intervalCG != lastIntervalCG) {
+        Integer choice = cgToChoiceMap.get(intervalCG);
+        if (choice == null) {
+          // Not registered through choiceGeneratorRegistered(), e.g., the CG was created before this execution
+          choice = resolveChoiceOfIntervalCG(intervalCG);
+          cgToChoiceMap.put(intervalCG, choice);
+        }
+        lastIntervalCG = intervalCG;
+        lastIntervalChoice = choice;
+      }
+      return lastIntervalChoice;
     }
 
     public ArrayList<TransitionEvent> getExecutionTrace() {
@@ -401,6 +983,10 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
       return executionTrace.get(0);
     }
 
+    public int getId() {
+      return id;
+    }
+
     public TransitionEvent getLastTransition() {
       return executionTrace.get(executionTrace.size() - 1);
     }
@@ -418,29 +1004,93 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
       return false;
     }
 
-    public void mapCGToChoice(IntChoiceFromSet icsCG, int choice) {
-      cgToChoiceMap.put(icsCG, choice);
+    public void mapCGToChoice(ChoiceGenerator<?> cg, int choice) {
+      cgToChoiceMap.put(cg, choice);
+    }
+
+    // Release the trace and R/W sets of this execution, and return the estimated number of bytes released
+    // The R-Graph has to be pruned of the transitions of this execution first (see RGraph.removeTransitions()):
+    // the transitions and this object then become garbage; the R/W sets may be shared with the main summary, so
+    // only the map entries are counted for them
+    public long release() {
+      long releasedBytes = (long) executionTrace.size() * (REFERENCE_BYTES + TRANSITION_BYTES) +
+              (long) readWriteFieldsMap.size() * MAP_ENTRY_BYTES;
+      for (TransitionEvent transition : executionTrace) {
+        if (transition.getExecution() == this) {
+          transition.setExecution(null);
+        }
+      }
+      executionTrace = new ArrayList<>();
+      readWriteFieldsMap = new HashMap<>();
+      clearCGToChoiceMap();
+      return releasedBytes;
     }
   }
 
-  // This class compactly stores a predecessor
-  // 1) a predecessor execution
-  // 2) the predecessor choice in that predecessor execution
-  private class Predecessor {
-    private int choice;           // Predecessor choice
-    private Execution execution;  // Predecessor execution
+  // This class is a set of primitive long values that keeps the insertion order
+  // 1) an open-addressing hash table to check membership without boxing, and
+  // 2) an array of elements in insertion order for allocation-free iteration.
+  // All elements have to be non-negative (-1 marks an empty slot in the hash table).
+  private static class OrderedLongSet {
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] elements;  // Elements in insertion order
+    private long[] table;     // Hash table (the length is always a power of 2)
+    private int size;
+
+    public OrderedLongSet() {
+      elements = new long[INITIAL_CAPACITY];
+      table = new long[INITIAL_CAPACITY * 2];
+      Arrays.fill(table, EMPTY);
+      size = 0;
+    }
 
-    public Predecessor(int predChoice, Execution predExec) {
-      choice = predChoice;
-      execution = predExec;
+    public boolean add(long element) {
+      int slot = findSlot(table, element);
+      if (table[slot] == element) {
+        return false;
+      }
+      table[slot] = element;
+      if (size == elements.length) {
+        elements = Arrays.copyOf(elements, size * 2);
+      }
+      elements[size++] = element;
+      // Keep the load factor of the hash table at most 1/2
+      if (size * 2 > table.length) {
+        rehash(table.length * 2);
+      }
+      return true;
     }
 
-    public int getChoice() {
-      return choice;
+    public boolean contains(long element) {
+      return table[findSlot(table, element)] == element;
     }
 
-    public Execution getExecution() {
-      return execution;
+    public long get(int index) {
+      return elements[index];
+    }
+
+    public int size() {
+      return size;
+    }
+
+    private static int findSlot(long[] hashTable, long element) {
+      int mask = hashTable.length - 1;
+      int slot = (int) ((element ^ (element >>> 32)) * 0x9E3779B9L) & mask;
+      while (hashTable[slot] != EMPTY && hashTable[slot] != element) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void rehash(int newCapacity) {
+      long[] newTable = new long[newCapacity];
+      Arrays.fill(newTable, EMPTY);
+      for (int i = 0; i < size; i++) {
+        newTable[findSlot(newTable, elements[i])] = elements[i];
+      }
+      table = newTable;
     }
   }
 
@@ -473,6 +1123,23 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
       }
     }
 
+    // Remove the transitions of the released executions and return the number of entries removed
+    public int removeTransitions(BitSet releasedExecutions) {
+      int numOfRemovedTransitions = 0;
+      Iterator<HashSet<TransitionEvent>> iterator = graph.values().iterator();
+      while (iterator.hasNext()) {
+        HashSet<TransitionEvent> transitionSet = iterator.next();
+        int size = transitionSet.size();
+        transitionSet.removeIf(transition -> transition.getExecution() != null &&
+                releasedExecutions.get(transition.getExecution().getId()));
+        numOfRemovedTransitions += size - transitionSet.size();
+        if (transitionSet.isEmpty()) {
+          iterator.remove();
+        }
+      }
+      return numOfRemovedTransitions;
+    }
+
     public HashSet<TransitionEvent> getReachableTransitionsAtState(int stateId) {
       if (!graph.containsKey(stateId)) {
         // This is a loop from a transition to itself, so just return the current transition
@@ -498,125 +1165,323 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   }
 
   // This class compactly stores Read and Write field sets
-  // We store the field name and its object ID
-  // Sharing the same field means the same field name and object ID
-  private class ReadWriteSet {
-    private HashMap<String, Integer> readMap;
-    private HashMap<String, Integer> writeMap;
-
-    public ReadWriteSet() {
-      readMap = new HashMap<>();
-      writeMap = new HashMap<>();
+  // We store the field ID (interned field name) and its object ID
+  // Sharing the same field means the same field ID and object ID
+  // Each entry is a long with the field ID in the upper 32 bits and the object ID in the lower 32 bits,
+  // and the entries are sorted by field ID (a field has at most one object ID in a set).
+  // This class is immutable: adding or removing a field returns a new set that shares the unchanged read or write
+  // entries with this set. Therefore, sets are shared (without copying) by executions, the main summary,
+  // and the backward DFS.
+  private static class ReadWriteSet {
+    private static final long[] NO_ENTRIES = new long[0];
+    private static final ReadWriteSet EMPTY = new ReadWriteSet(NO_ENTRIES, NO_ENTRIES);
+
+    private final long[] readEntries;
+    private final long[] writeEntries;
+
+    private ReadWriteSet(long[] rEntries, long[] wEntries) {
+      readEntries = rEntries;
+      writeEntries = wEntries;
     }
 
-    public void addReadField(String field, int objectId) {
-      readMap.put(field, objectId);
+    public ReadWriteSet addReadField(int fieldId, int objectId) {
+      return newSet(putEntry(readEntries, fieldId, objectId), writeEntries);
     }
 
-    public void addWriteField(String field, int objectId) {
-      writeMap.put(field, objectId);
+    public ReadWriteSet addWriteField(int fieldId, int objectId) {
+      return newSet(readEntries, putEntry(writeEntries, fieldId, objectId));
     }
 
-    public void removeReadField(String field) {
-      readMap.remove(field);
+    public ReadWriteSet removeReadField(int fieldId) {
+      return newSet(removeEntry(readEntries, fieldId), writeEntries);
     }
 
-    public void removeWriteField(String field) {
-      writeMap.remove(field);
+    public ReadWriteSet removeWriteField(int fieldId) {
+      return newSet(readEntries, removeEntry(writeEntries, fieldId));
     }
 
     public boolean isEmpty() {
-      return readMap.isEmpty() && writeMap.isEmpty();
+      return readEntries.length == 0 && writeEntries.length == 0;
+    }
+
+    public int getNumOfReadFields() {
+      return readEntries.length;
+    }
+
+    public int getNumOfWriteFields() {
+      return writeEntries.length;
     }
 
-    public ReadWriteSet getCopy() {
-      ReadWriteSet copyRWSet = new ReadWriteSet();
-      // Copy the maps in the set into the new object copy
-      copyRWSet.setReadMap(new HashMap<>(this.getReadMap()));
-      copyRWSet.setWriteMap(new HashMap<>(this.getWriteMap()));
-      return copyRWSet;
+    public int getReadFieldId(int index) {
+      return (int) (readEntries[index] >>> 32);
     }
 
-    public Set<String> getReadSet() {
-      return readMap.keySet();
+    public int getReadObjectId(int index) {
+      return (int) readEntries[index];
     }
 
-    public Set<String> getWriteSet() {
-      return writeMap.keySet();
+    public int getWriteFieldId(int index) {
+      return (int) (writeEntries[index] >>> 32);
     }
 
-    public boolean readFieldExists(String field) {
-      return readMap.containsKey(field);
+    public int getWriteObjectId(int index) {
+      return (int) writeEntries[index];
     }
 
-    public boolean writeFieldExists(String field) {
-      return writeMap.containsKey(field);
+    public boolean readFieldExists(int fieldId) {
+      return indexOf(readEntries, fieldId) >= 0;
     }
 
-    public int readFieldObjectId(String field) {
-      return readMap.get(field);
+    public boolean writeFieldExists(int fieldId) {
+      return indexOf(writeEntries, fieldId) >= 0;
     }
 
-    public int writeFieldObjectId(String field) {
-      return writeMap.get(field);
+    public int readFieldObjectId(int fieldId) {
+      return (int) readEntries[indexOf(readEntries, fieldId)];
     }
 
-    private HashMap<String, Integer> getReadMap() {
-      return readMap;
+    public int writeFieldObjectId(int fieldId) {
+      return (int) writeEntries[indexOf(writeEntries, fieldId)];
     }
 
-    private HashMap<String, Integer> getWriteMap() {
-      return writeMap;
+    // Return the entries that are in this set but not in the other set (same field and object ID)
+    public ReadWriteSet minus(ReadWriteSet otherRWSet) {
+      return newSet(subtractEntries(readEntries, otherRWSet.readEntries),
+              subtractEntries(writeEntries, otherRWSet.writeEntries));
     }
 
-    private void setReadMap(HashMap<String, Integer> rMap) {
-      readMap = rMap;
+    // Check if the two sets access the same field of the same object and one of the accesses is a write
+    public boolean conflictsWith(ReadWriteSet otherRWSet) {
+      return sharesEntry(writeEntries, otherRWSet.writeEntries) || sharesEntry(writeEntries, otherRWSet.readEntries) ||
+              sharesEntry(readEntries, otherRWSet.writeEntries);
     }
 
-    private void setWriteMap(HashMap<String, Integer> wMap) {
-      writeMap = wMap;
+    // Return the union of this set and the other set (the object ID of the other set wins for the same field)
+    public ReadWriteSet union(ReadWriteSet otherRWSet) {
+      return newSet(mergeEntries(readEntries, otherRWSet.readEntries),
+              mergeEntries(writeEntries, otherRWSet.writeEntries));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof ReadWriteSet)) {
+        return false;
+      }
+      ReadWriteSet otherRWSet = (ReadWriteSet) other;
+      return Arrays.equals(readEntries, otherRWSet.readEntries) && Arrays.equals(writeEntries, otherRWSet.writeEntries);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(readEntries) * 31 + Arrays.hashCode(writeEntries);
+    }
+
+    private ReadWriteSet newSet(long[] rEntries, long[] wEntries) {
+      if (rEntries == readEntries && wEntries == writeEntries) {
+        return this;
+      }
+      if (rEntries.length == 0 && wEntries.length == 0) {
+        return EMPTY;
+      }
+      return new ReadWriteSet(rEntries, wEntries);
+    }
+
+    private static long toEntry(int fieldId, int objectId) {
+      return ((long) fieldId << 32) | (objectId & 0xFFFFFFFFL);
+    }
+
+    // Binary search by field ID: return the index of the entry, or (-(insertion point) - 1) if it does not exist
+    private static int indexOf(long[] entries, int fieldId) {
+      int low = 0;
+      int high = entries.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int midFieldId = (int) (entries[mid] >>> 32);
+        if (midFieldId < fieldId) {
+          low = mid + 1;
+        } else if (midFieldId > fieldId) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+
+    private static long[] putEntry(long[] entries, int fieldId, int objectId) {
+      long entry = toEntry(fieldId, objectId);
+      int index = indexOf(entries, fieldId);
+      if (index >= 0) {
+        if (entries[index] == entry) {
+          return entries;
+        }
+        long[] newEntries = entries.clone();
+        newEntries[index] = entry;
+        return newEntries;
+      }
+      index = -(index + 1);
+      long[] newEntries = new long[entries.length + 1];
+      System.arraycopy(entries, 0, newEntries, 0, index);
+      newEntries[index] = entry;
+      System.arraycopy(entries, index, newEntries, index + 1, entries.length - index);
+      return newEntries;
+    }
+
+    private static long[] removeEntry(long[] entries, int fieldId) {
+      int index = indexOf(entries, fieldId);
+      if (index < 0) {
+        return entries;
+      }
+      if (entries.length == 1) {
+        return NO_ENTRIES;
+      }
+      long[] newEntries = new long[entries.length - 1];
+      System.arraycopy(entries, 0, newEntries, 0, index);
+      System.arraycopy(entries, index + 1, newEntries, index, entries.length - index - 1);
+      return newEntries;
+    }
+
+    private static boolean sharesEntry(long[] entries, long[] otherEntries) {
+      int i = 0, j = 0;
+      while (i < entries.length && j < otherEntries.length) {
+        long fieldId = entries[i] >>> 32;
+        long otherFieldId = otherEntries[j] >>> 32;
+        if (fieldId < otherFieldId) {
+          i++;
+        } else if (fieldId > otherFieldId) {
+          j++;
+        } else if (entries[i] == otherEntries[j]) {
+          return true;
+        } else {
+          i++;
+          j++;
+        }
+      }
+      return false;
+    }
+
+    private static long[] mergeEntries(long[] entries, long[] otherEntries) {
+      if (otherEntries.length == 0) {
+        return entries;
+      }
+      if (entries.length == 0) {
+        return otherEntries;
+      }
+      long[] mergedEntries = new long[entries.length + otherEntries.length];
+      int i = 0, j = 0, k = 0;
+      boolean isChanged = false;
+      while (i < entries.length || j < otherEntries.length) {
+        if (j == otherEntries.length ||
+                (i < entries.length && (entries[i] >>> 32) < (otherEntries[j] >>> 32))) {
+          mergedEntries[k++] = entries[i++];
+        } else if (i == entries.length || (otherEntries[j] >>> 32) < (entries[i] >>> 32)) {
+          mergedEntries[k++] = otherEntries[j++];
+          isChanged = true;
+        } else {
+          // Same field: the other entry wins
+          isChanged |= entries[i] != otherEntries[j];
+          mergedEntries[k++] = otherEntries[j++];
+          i++;
+        }
+      }
+      if (!isChanged) {
+        return entries;
+      }
+      return k == mergedEntries.length ? mergedEntries : Arrays.copyOf(mergedEntries, k);
+    }
+
+    private static long[] subtractEntries(long[] entries, long[] otherEntries) {
+      if (entries.length == 0 || otherEntries.length == 0) {
+        return entries;
+      }
+      long[] remainingEntries = new long[entries.length];
+      int k = 0;
+      for (long entry : entries) {
+        int index = indexOf(otherEntries, (int) (entry >>> 32));
+        if (index < 0 || otherEntries[index] != entry) {
+          remainingEntries[k++] = entry;
+        }
+      }
+      if (k == entries.length) {
+        return entries;
+      }
+      return k == 0 ? NO_ENTRIES : Arrays.copyOf(remainingEntries, k);
     }
   }
 
   // This class is a representation of a state.
   // It stores the predecessors to a state.
+  // Each predecessor (execution ID and choice) is encoded into a long: the execution ID in the upper 32 bits and
+  // the predecessor choice in that predecessor execution in the lower 32 bits.
   // TODO: We also have stateToEventMap, restorableStateMap, and doneBacktrackMap that has state Id as HashMap key.
   private class PredecessorInfo {
-    private HashSet<Predecessor> predecessors;  // Maps incoming events/transitions (execution and choice)
-    private HashMap<Execution, HashSet<Integer>> recordedPredecessors;
-                                                // Memorize event and choice number to not record them twice
+    private OrderedLongSet predecessors;  // Incoming events/transitions (execution and choice) recorded only once
+    private int numOfCheckedPredecessors; // Predecessors [0, numOfCheckedPredecessors) are already non-redundant
 
     public PredecessorInfo() {
-      predecessors = new HashSet<>();
-      recordedPredecessors = new HashMap<>();
+      predecessors = new OrderedLongSet();
+      numOfCheckedPredecessors = 0;
     }
 
-    public HashSet<Predecessor> getPredecessors() {
-      return predecessors;
+    public int getNumOfPredecessors() {
+      return predecessors.size();
     }
 
-    private boolean isRecordedPredecessor(Execution execution, int choice) {
-      // See if we have recorded this predecessor earlier
-      HashSet<Integer> recordedChoices;
-      if (recordedPredecessors.containsKey(execution)) {
-        recordedChoices = recordedPredecessors.get(execution);
-        if (recordedChoices.contains(choice)) {
-          return true;
-        }
-      } else {
-        recordedChoices = new HashSet<>();
-        recordedPredecessors.put(execution, recordedChoices);
-      }
-      // Record the choice if we haven't seen it
-      recordedChoices.add(choice);
+    public int getPredecessorChoice(int index) {
+      return (int) predecessors.get(index);
+    }
 
-      return false;
+    public Execution getPredecessorExecution(int index) {
+      return executionList.get(getPredecessorExecutionId(index));
+    }
+
+    public int getPredecessorExecutionId(int index) {
+      return (int) (predecessors.get(index) >>> 32);
     }
 
     public void recordPredecessor(Execution execution, int choice) {
-      if (!isRecordedPredecessor(execution, choice)) {
-        predecessors.add(new Predecessor(choice, execution));
+      predecessors.add(((long) execution.getId() << 32) | (choice & 0xFFFFFFFFL));
+    }
+
+    // Remove predecessors recorded since the last call that are redundant and return the number of removed ones
+    // A predecessor is redundant if a retained predecessor has the same state, event, and R/W set:
+    // the backward DFS through both would perform the same summary updates and conflict checks
+    public int removeRedundantPredecessors() {
+      int numOfPredecessors = predecessors.size();
+      if (numOfCheckedPredecessors == numOfPredecessors) {
+        return 0;
+      }
+      OrderedLongSet retainedPredecessors = new OrderedLongSet();
+      for (int i = 0; i < numOfCheckedPredecessors; i++) {
+        retainedPredecessors.add(predecessors.get(i));
+      }
+      for (int i = numOfCheckedPredecessors; i < numOfPredecessors; i++) {
+        long predecessor = predecessors.get(i);
+        boolean isRedundant = false;
+        for (int j = 0; j < retainedPredecessors.size() && !isRedundant; j++) {
+          isRedundant = isSamePredecessor(predecessor, retainedPredecessors.get(j));
+        }
+        if (!isRedundant) {
+          retainedPredecessors.add(predecessor);
+        }
+      }
+      predecessors = retainedPredecessors;
+      numOfCheckedPredecessors = retainedPredecessors.size();
+      return numOfPredecessors - numOfCheckedPredecessors;
+    }
+
+    private boolean isSamePredecessor(long predecessor, long otherPredecessor) {
+      Execution execution = executionList.get((int) (predecessor >>> 32));
+      Execution otherExecution = executionList.get((int) (otherPredecessor >>> 32));
+      TransitionEvent transition = execution.getExecutionTrace().get((int) predecessor);
+      TransitionEvent otherTransition = otherExecution.getExecutionTrace().get((int) otherPredecessor);
+      if (transition.getStateId() != otherTransition.getStateId() ||
+              transition.getChoice() != otherTransition.getChoice()) {
+        return false;
       }
+      ReadWriteSet rwSet = execution.getReadWriteFieldsMap().get((int) predecessor);
+      ReadWriteSet otherRWSet = otherExecution.getReadWriteFieldsMap().get((int) otherPredecessor);
+      return rwSet == null ? otherRWSet == null : rwSet.equals(otherRWSet);
     }
   }
 
@@ -679,91 +1544,1334 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     }
   }
 
-  // -- PRIVATE CLASSES RELATED TO SUMMARY
-  // This class stores the main summary of states
-  // 1) Main mapping between state ID and state summary
-  // 2) State summary is a mapping between events (i.e., event choices) and their respective R/W sets
-  private class MainSummary {
-    private HashMap<Integer, HashMap<Integer, ReadWriteSet>> mainSummary;
+  // -- PRIVATE CLASSES RELATED TO SUMMARY
+  // This class stores the main summary of states
+  // 1) Main mapping between state ID and state summary
+  // 2) State summary is a mapping between events (i.e., event choices) and their respective R/W sets
+  private class MainSummary {
+    private HashMap<Integer, StateSummary> mainSummary;
+
+    public MainSummary() {
+      mainSummary = new HashMap<>();
+    }
+
+    public StateSummary getStateSummary(int stateId) {
+      return mainSummary.get(stateId);
+    }
+
+    public ReadWriteSet getRWSetForEventChoiceAtState(int eventChoice, int stateId) {
+      StateSummary stateSummary = mainSummary.get(stateId);
+      return stateSummary.getRWSet(eventChoice);
+    }
+
+    public Set<Integer> getStateIds() {
+      return mainSummary.keySet();
+    }
+
+    public long getNumOfSummarizedPairs() {
+      long numOfPairs = 0;
+      for (StateSummary stateSummary : mainSummary.values()) {
+        numOfPairs += stateSummary.getNumOfEvents();
+      }
+      return numOfPairs;
+    }
+
+    private ReadWriteSet performUnion(StateSummary stateSummary, int eventChoice, ReadWriteSet rwSet) {
+      // Record the union of both sets: the fields in rwSet but not in the recorded set will be traversed
+      ReadWriteSet recordedRWSet = stateSummary.getRWSet(eventChoice);
+      stateSummary.putRWSet(eventChoice, recordedRWSet.union(rwSet));
+      // Remove the entries from rwSet if both field and object ID are the same
+      return rwSet.minus(recordedRWSet);
+    }
+
+    public ReadWriteSet updateStateSummary(int stateId, int eventChoice, ReadWriteSet rwSet) {
+      // If the state Id has not existed, insert the StateSummary object
+      // If the state Id has existed, find the event choice:
+      // 1) If the event choice has not existed, insert the ReadWriteSet object
+      // 2) If the event choice has existed, perform union between the two ReadWriteSet objects
+      if (!rwSet.isEmpty()) {
+        StateSummary stateSummary = mainSummary.get(stateId);
+        // R/W sets are immutable, so the summary shares them instead of copying
+        if (stateSummary == null) {
+          stateSummary = new StateSummary(maxEventChoice);
+          stateSummary.putRWSet(eventChoice, rwSet);
+          mainSummary.put(stateId, stateSummary);
+        } else {
+          if (stateSummary.getRWSet(eventChoice) == null) {
+            stateSummary.putRWSet(eventChoice, rwSet);
+          } else {
+            rwSet = performUnion(stateSummary, eventChoice, rwSet);
+          }
+        }
+      }
+      return rwSet;
+    }
+  }
+
+  // This class stores the summary of a state: the R/W set of each event, indexed by event (events are dense
+  // from 0 to maxEventChoice).
+  // A walk over the events visits them in ascending order (the order of the event set of the original
+  // implementation) up to a snapshot stamp taken at its start: events inserted during the walk are not visited.
+  private static class StateSummary {
+    private ReadWriteSet[] rwSets;
+    private int[] stamps;       // Insertion stamp indexed by event (0 if the event is not in the summary)
+    private int numOfEvents;
+
+    public StateSummary(int maxEvent) {
+      rwSets = new ReadWriteSet[maxEvent + 1];
+      stamps = new int[maxEvent + 1];
+      numOfEvents = 0;
+    }
+
+    // The stamp of the last inserted event: a walk visits the events stamped up to it
+    public int getSnapshot() {
+      return numOfEvents;
+    }
+
+    public int getNumOfEventSlots() {
+      return rwSets.length;
+    }
+
+    public boolean isInSnapshot(int eventChoice, int snapshot) {
+      return eventChoice < stamps.length && stamps[eventChoice] != 0 && stamps[eventChoice] <= snapshot;
+    }
+
+    public int getNumOfEvents() {
+      return numOfEvents;
+    }
+
+    public ReadWriteSet getRWSet(int eventChoice) {
+      return eventChoice < rwSets.length ? rwSets[eventChoice] : null;
+    }
+
+    public void putRWSet(int eventChoice, ReadWriteSet rwSet) {
+      if (eventChoice >= rwSets.length) {
+        rwSets = Arrays.copyOf(rwSets, eventChoice + 1);
+        stamps = Arrays.copyOf(stamps, eventChoice + 1);
+      }
+      if (rwSets[eventChoice] == null) {
+        numOfEvents++;
+        stamps[eventChoice] = numOfEvents;
+      }
+      rwSets[eventChoice] = rwSet;
+    }
+  }
+
+
+  // This class groups events into equivalence classes, e.g., paired lock.locked/lock.unlocked events
+  // Two events are in the same class iff:
+  // 1) they have the same R/W footprint (union of the R/W sets of all their transitions so far), and
+  // 2) they have the same effect: from every common source state both events lead to the same successor state
+  //    (and there is at least one common source state).
+  // Footprints and successors are learned during the first executions, then the classes are built and an event is
+  // replaced by the representative (the lowest event) of its class in a backtrack set if both have been observed at
+  // the state of the backtrack point with the same R/W set and the same successor state. A class is split if a footprint of an
+  // event grows or an event leads to a different successor state than its class afterwards.
+  private static class EventClasses {
+    private ReadWriteSet[] footprints;                  // Footprint indexed by event
+    private HashMap<Integer, int[]> stateToSuccessors;  // Successor state IDs indexed by event for each source state
+    private int[] representatives;                      // Representative indexed by event (null before the classes are built)
+    private int numOfSplitEvents;
+
+    public EventClasses() {
+      footprints = new ReadWriteSet[0];
+      stateToSuccessors = new HashMap<>();
+      representatives = null;
+      numOfSplitEvents = 0;
+    }
+
+    public void buildClasses() {
+      representatives = new int[footprints.length];
+      for (int event = 0; event < footprints.length; event++) {
+        representatives[event] = event;
+        if (footprints[event] == null) {
+          continue;
+        }
+        // Compare with the representatives of the existing classes
+        for (int rep = 0; rep < event; rep++) {
+          if (representatives[rep] == rep && footprints[event].equals(footprints[rep]) && isSameEffect(event, rep)) {
+            representatives[event] = rep;
+            break;
+          }
+        }
+      }
+    }
+
+    public int getNumOfSplitEvents() {
+      return numOfSplitEvents;
+    }
+
+    public int getRepresentative(int event) {
+      if (representatives == null || event >= representatives.length) {
+        return event;
+      }
+      return representatives[event];
+    }
+
+    public boolean isBuilt() {
+      return representatives != null;
+    }
+
+    public void recordFootprint(int event, ReadWriteSet rwSet) {
+      if (event >= footprints.length) {
+        footprints = Arrays.copyOf(footprints, event + 1);
+      }
+      ReadWriteSet footprint = footprints[event];
+      ReadWriteSet newFootprint = footprint == null ? rwSet : footprint.union(rwSet);
+      footprints[event] = newFootprint;
+      // The footprint has grown: this event may not be equivalent to its class anymore
+      if (footprint != null && newFootprint != footprint) {
+        split(event);
+      }
+    }
+
+    public void recordSuccessor(int sourceStateId, int event, int successorStateId) {
+      int[] successors = stateToSuccessors.get(sourceStateId);
+      if (successors == null) {
+        successors = new int[event + 1];
+        Arrays.fill(successors, -1);
+        stateToSuccessors.put(sourceStateId, successors);
+      } else if (event >= successors.length) {
+        int length = successors.length;
+        successors = Arrays.copyOf(successors, event + 1);
+        Arrays.fill(successors, length, successors.length, -1);
+        stateToSuccessors.put(sourceStateId, successors);
+      }
+      if (successors[event] == -1) {
+        successors[event] = successorStateId;
+      }
+      // The effect differs from the rest of the class: this event is not equivalent to its class anymore
+      if (isBuilt() && event < representatives.length) {
+        int rep = representatives[event];
+        for (int other = 0; other < representatives.length; other++) {
+          if (other != event && representatives[other] == rep && other < successors.length &&
+                  successors[other] != -1 && successors[other] != successorStateId) {
+            split(event);
+            break;
+          }
+        }
+      }
+    }
+
+    // Return true if both events have been observed at the state and lead to the same successor state from it
+    public boolean isSameEffectAt(int stateId, int event, int otherEvent) {
+      int[] successors = stateToSuccessors.get(stateId);
+      return successors != null && event < successors.length && otherEvent < successors.length &&
+              successors[event] != -1 && successors[event] == successors[otherEvent];
+    }
+
+    private boolean isSameEffect(int event, int otherEvent) {
+      boolean hasCommonState = false;
+      for (int[] successors : stateToSuccessors.values()) {
+        if (event < successors.length && otherEvent < successors.length &&
+                successors[event] != -1 && successors[otherEvent] != -1) {
+          if (successors[event] != successors[otherEvent]) {
+            return false;
+          }
+          hasCommonState = true;
+        }
+      }
+      return hasCommonState;
+    }
+
+    private void split(int event) {
+      if (!isBuilt() || event >= representatives.length) {
+        return;
+      }
+      int rep = representatives[event];
+      int newRep = -1;
+      for (int other = 0; other < representatives.length; other++) {
+        if (other != event && representatives[other] == rep) {
+          // If this event is the representative then the lowest remaining event becomes the representative
+          if (rep == event) {
+            if (newRep == -1) {
+              newRep = other;
+            }
+            representatives[other] = newRep;
+          } else {
+            newRep = rep;
+          }
+        }
+      }
+      // This event is in a class by itself
+      if (newRep != -1) {
+        representatives[event] = event;
+        numOfSplitEvents++;
+      }
+    }
+
+    @Override
+    public String toString() {
+      // Print the classes with more than one event, e.g., {0=[0, 3], 1=[1, 5]}
+      TreeMap<Integer, ArrayList<Integer>> classes = new TreeMap<>();
+      if (isBuilt()) {
+        for (int event = 0; event < representatives.length; event++) {
+          int rep = representatives[event];
+          if (!classes.containsKey(rep)) {
+            classes.put(rep, new ArrayList<>());
+          }
+          classes.get(rep).add(event);
+        }
+      }
+      classes.values().removeIf(members -> members.size() == 1);
+      return classes.toString();
+    }
+  }
+
+  // This class stores the static R/W footprints of events computed by the extractor (see ExtractorScript.py)
+  // Each line is "event <event> <app> R=<keys> W=<keys>" or "event <event> <app> *" for an unknown footprint
+  // Two events are independent iff both footprints are known and neither event writes what the other reads or writes
+  private static class StaticFootprints {
+    private boolean[][] independence;   // Independence indexed by event pairs
+
+    public StaticFootprints(String footprintFile) {
+      ArrayList<HashSet<String>> readSets = new ArrayList<>();
+      ArrayList<HashSet<String>> writeSets = new ArrayList<>();
+      try {
+        for (String line : Files.readAllLines(Paths.get(footprintFile))) {
+          String[] tokens = line.trim().split(" ");
+          if (!tokens[0].equals("event")) {
+            continue;
+          }
+          int event = Integer.parseInt(tokens[1]);
+          while (readSets.size() <= event) {
+            readSets.add(null);
+            writeSets.add(null);
+          }
+          // The sets stay null for an unknown footprint
+          if (!tokens[3].equals("*")) {
+            readSets.set(event, parseKeys(tokens[3]));
+            writeSets.set(event, parseKeys(tokens[4]));
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        throw new JPFException("cannot read event_footprints: " + footprintFile);
+      }
+      int numOfEvents = readSets.size();
+      independence = new boolean[numOfEvents][numOfEvents];
+      for (int event = 0; event < numOfEvents; event++) {
+        for (int other = 0; other < numOfEvents; other++) {
+          independence[event][other] = readSets.get(event) != null && readSets.get(other) != null &&
+                  Collections.disjoint(writeSets.get(event), readSets.get(other)) &&
+                  Collections.disjoint(writeSets.get(event), writeSets.get(other)) &&
+                  Collections.disjoint(writeSets.get(other), readSets.get(event));
+        }
+      }
+    }
+
+    public boolean isIndependent(int event, int otherEvent) {
+      if (event >= independence.length || otherEvent >= independence.length) {
+        return false;
+      }
+      return independence[event][otherEvent];
+    }
+
+    private static HashSet<String> parseKeys(String token) {
+      // Parse R=<key>,<key>,... or W=<key>,<key>,...
+      HashSet<String> keys = new HashSet<>();
+      String keyList = token.substring(token.indexOf('=') + 1);
+      if (!keyList.isEmpty()) {
+        keys.addAll(Arrays.asList(keyList.split(",")));
+      }
+      return keys;
+    }
+  }
+
+  // This class stores what the first boolean CG round found along its first execution to seed the second round
+  // Both rounds start with the same order of events, so the first executions are aligned by position (choice counter):
+  // for every position we keep the state ID, the R/W set of the transition, and the events of the backtrack points
+  // constructed at that state. The second round only reuses a position as long as the R/W sets of all the transitions
+  // before it are the same and the state IDs of both rounds map one-to-one; otherwise the rounds have diverged.
+  private static class RoundSeeds {
+    private int[] stateIds;
+    private ReadWriteSet[] rwSets;
+    private int[][] events;
+    private HashMap<Integer, Integer> stateIdMap;         // Maps the first round state IDs to the second round
+    private HashMap<Integer, Integer> reverseStateIdMap;  // Maps the second round state IDs to the first round
+
+    public RoundSeeds(Execution firstExecution, HashMap<Integer, HashSet<Integer>> doneBacktrackMap) {
+      ArrayList<TransitionEvent> executionTrace = firstExecution.getExecutionTrace();
+      int length = executionTrace.size();
+      stateIds = new int[length];
+      rwSets = new ReadWriteSet[length];
+      events = new int[length][];
+      for (int i = 0; i < length; i++) {
+        stateIds[i] = executionTrace.get(i).getStateId();
+        ReadWriteSet rwSet = firstExecution.getReadWriteFieldsMap().get(i);
+        rwSets[i] = rwSet == null ? ReadWriteSet.EMPTY : rwSet;
+        HashSet<Integer> doneEvents = doneBacktrackMap.get(stateIds[i]);
+        events[i] = new int[doneEvents == null ? 0 : doneEvents.size()];
+        if (doneEvents != null) {
+          int j = 0;
+          for (Integer event : doneEvents) {
+            events[i][j++] = event;
+          }
+          Arrays.sort(events[i]);
+        }
+      }
+      stateIdMap = new HashMap<>();
+      reverseStateIdMap = new HashMap<>();
+    }
+
+    public int[] getEvents(int position) {
+      return events[position];
+    }
+
+    public int getLength() {
+      return stateIds.length;
+    }
+
+    // Check that the transition at this position had the same R/W set in both rounds
+    public boolean isSameTransition(int position, ReadWriteSet rwSet) {
+      return rwSets[position].equals(rwSet == null ? ReadWriteSet.EMPTY : rwSet);
+    }
+
+    // Map the state at this position to the second round state and check that the mapping is still one-to-one
+    public boolean mapState(int position, int stateId) {
+      int firstRoundStateId = stateIds[position];
+      Integer mappedStateId = stateIdMap.get(firstRoundStateId);
+      Integer reverseMappedStateId = reverseStateIdMap.get(stateId);
+      if (mappedStateId == null && reverseMappedStateId == null) {
+        stateIdMap.put(firstRoundStateId, stateId);
+        reverseStateIdMap.put(stateId, firstRoundStateId);
+        return true;
+      }
+      return mappedStateId != null && mappedStateId == stateId &&
+              reverseMappedStateId != null && reverseMappedStateId == firstRoundStateId;
+    }
+  }
+
+  // This interface counts the unique transitions, i.e., (state, event) pairs, for the statistics
+  // The counts are kept up to date so that they can also be read while the search is running
+  private interface UniqueTransitionCounter {
+    void add(int stateId, int event);
+    long getNumOfTransitions();
+    long getNumOfStates();
+  }
+
+  // Exact counting: the events of a state are a bitset (events are dense up to the max event choice)
+  private static class ExactUniqueTransitionCounter implements UniqueTransitionCounter {
+    private HashMap<Integer, BitSet> stateToEvents;
+    private long numOfTransitions;
+
+    public ExactUniqueTransitionCounter() {
+      stateToEvents = new HashMap<>();
+      numOfTransitions = 0;
+    }
+
+    @Override
+    public void add(int stateId, int event) {
+      BitSet events = stateToEvents.get(stateId);
+      if (events == null) {
+        events = new BitSet();
+        stateToEvents.put(stateId, events);
+      }
+      if (!events.get(event)) {
+        events.set(event);
+        numOfTransitions++;
+      }
+    }
+
+    @Override
+    public long getNumOfTransitions() {
+      return numOfTransitions;
+    }
+
+    @Override
+    public long getNumOfStates() {
+      return stateToEvents.size();
+    }
+
+    // Add all the transitions counted so far into another counter
+    public void copyTo(UniqueTransitionCounter counter) {
+      for (Map.Entry<Integer, BitSet> entry : stateToEvents.entrySet()) {
+        BitSet events = entry.getValue();
+        for (int event = events.nextSetBit(0); event >= 0; event = events.nextSetBit(event + 1)) {
+          counter.add(entry.getKey(), event);
+        }
+      }
+    }
+  }
+
+  // Approximate counting in bounded memory: HyperLogLog sketches of the (state, event) pairs and of the states
+  private static class SketchedUniqueTransitionCounter implements UniqueTransitionCounter {
+    private final HyperLogLog transitionSketch;
+    private final HyperLogLog stateSketch;
+
+    public SketchedUniqueTransitionCounter(int precision) {
+      transitionSketch = new HyperLogLog(precision);
+      stateSketch = new HyperLogLog(precision);
+    }
+
+    @Override
+    public void add(int stateId, int event) {
+      transitionSketch.add(((long) stateId << 32) | (event & 0xFFFFFFFFL));
+      stateSketch.add(stateId);
+    }
+
+    @Override
+    public long getNumOfTransitions() {
+      return transitionSketch.estimate();
+    }
+
+    @Override
+    public long getNumOfStates() {
+      return stateSketch.estimate();
+    }
+
+    public double getRelativeError() {
+      return transitionSketch.getRelativeError();
+    }
+  }
+
+  // This class is a HyperLogLog cardinality sketch with 2^precision one-byte registers
+  // The estimate is cached and only recomputed after a register has changed
+  private static class HyperLogLog {
+    private final byte[] registers;
+    private final int precision;
+    private long estimate;
+    private boolean isEstimateValid;
+
+    public HyperLogLog(int precision) {
+      this.precision = precision;
+      registers = new byte[1 << precision];
+      estimate = 0;
+      isEstimateValid = true;
+    }
+
+    public void add(long element) {
+      long hash = mix(element);
+      int index = (int) (hash >>> (64 - precision));
+      // The rank is the position of the first 1 bit in the remaining bits (the guard bit bounds it)
+      byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+      if (rank > registers[index]) {
+        registers[index] = rank;
+        isEstimateValid = false;
+      }
+    }
+
+    public long estimate() {
+      if (!isEstimateValid) {
+        int numOfRegisters = registers.length;
+        double sum = 0;
+        int numOfZeros = 0;
+        for (byte register : registers) {
+          sum += 1.0 / (1L << register);
+          if (register == 0) {
+            numOfZeros++;
+          }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / numOfRegisters);
+        double rawEstimate = alpha * numOfRegisters * numOfRegisters / sum;
+        // Small range correction (linear counting)
+        if (rawEstimate <= 2.5 * numOfRegisters && numOfZeros > 0) {
+          rawEstimate = numOfRegisters * Math.log((double) numOfRegisters / numOfZeros);
+        }
+        estimate = Math.round(rawEstimate);
+        isEstimateValid = true;
+      }
+      return estimate;
+    }
+
+    public double getRelativeError() {
+      return 1.04 / Math.sqrt(registers.length);
+    }
+
+    // 64-bit finalizer of SplitMix64
+    private static long mix(long value) {
+      value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+      value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+      return value ^ (value >>> 31);
+    }
+  }
+
+  // This class watches the heap occupancy after garbage collections through the collection usage thresholds of the
+  // heap pools, and tells the listener when to apply the next degradation step (it never forces a collection)
+  private static class MemoryGovernor implements NotificationListener {
+    private final ArrayList<MemoryPoolMXBean> pools;
+    private volatile boolean isUnderPressure;   // Set by the notification thread of the memory MXBean
+    private boolean isRecheckPending;           // The pools are checked again after the next collection
+    private long numOfCollectionsAtStep;
+    private long usageBeforeStep;               // Used heap of the pools after the last collection before the step
+    private long usageAfterStep;                // Used heap of the pools after the first collection after the step
+    private int nextStep;
+
+    public MemoryGovernor(int thresholdPercentage) {
+      pools = new ArrayList<>();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        long max = pool.getUsage().getMax();
+        if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+          pool.setCollectionUsageThreshold(max / 100 * thresholdPercentage);
+          pools.add(pool);
+        }
+      }
+      isUnderPressure = false;
+      isRecheckPending = false;
+      numOfCollectionsAtStep = 0;
+      usageBeforeStep = 0;
+      usageAfterStep = 0;
+      nextStep = 0;
+      ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+      if (notification.getType().equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED)) {
+        isUnderPressure = true;
+      }
+    }
+
+    public boolean isUnderPressure() {
+      return isUnderPressure;
+    }
+
+    // The notification is only sent when a threshold is crossed again, so the pools are checked after the first
+    // collection that follows a step; return true when this collection has happened (the step can be reported)
+    public boolean checkAfterStep() {
+      if (!isRecheckPending || getNumOfCollections() <= numOfCollectionsAtStep) {
+        return false;
+      }
+      isRecheckPending = false;
+      usageAfterStep = getCollectionUsage();
+      for (MemoryPoolMXBean pool : pools) {
+        if (pool.isCollectionUsageThresholdExceeded()) {
+          isUnderPressure = true;
+        }
+      }
+      return true;
+    }
+
+    public long getUsageBeforeStep() {
+      return usageBeforeStep;
+    }
+
+    public long getUsageAfterStep() {
+      return usageAfterStep;
+    }
+
+    public int nextStep() {
+      return nextStep++;
+    }
+
+    public int getNumOfSteps() {
+      return nextStep;
+    }
+
+    // Used heap of the pools after the last collection
+    public long getCollectionUsage() {
+      long used = 0;
+      for (MemoryPoolMXBean pool : pools) {
+        used += pool.getCollectionUsage().getUsed();
+      }
+      return used;
+    }
+
+    // Wait for the next collection after a step before checking the pools again
+    public void stepApplied(long usage) {
+      isUnderPressure = false;
+      isRecheckPending = true;
+      numOfCollectionsAtStep = getNumOfCollections();
+      usageBeforeStep = usage;
+    }
+
+    private long getNumOfCollections() {
+      long numOfCollections = 0;
+      for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+        numOfCollections += Math.max(collector.getCollectionCount(), 0);
+      }
+      return numOfCollections;
+    }
+
+    public void close() {
+      try {
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+      } catch (ListenerNotFoundException e) {
+      }
+    }
+  }
+
+  // This class is the choice path of a conflict: the values of the event (IntChoiceFromSet), boolean, and interval
+  // (IntIntervalGenerator) CGs from the root to the conflict, written as one "int <event>", "boolean <value>", or
+  // "interval <value>" line per CG in the order of the path
+  private static class ChoicePath {
+    private String[] kinds;   // "int", "boolean", or "interval"
+    private int[] values;     // Boolean values are 0 (false) and 1 (true)
+    private int index;        // Next choice to replay
+
+    public ChoicePath(String choicesFile) {
+      List<String> lines;
+      try {
+        lines = Files.readAllLines(Paths.get(choicesFile));
+      } catch (IOException e) {
+        throw new JPFException("cannot read replay_choices: " + choicesFile);
+      }
+      kinds = new String[lines.size()];
+      values = new int[lines.size()];
+      int size = 0;
+      for (String line : lines) {
+        String[] tokens = line.trim().split(" ");
+        if (tokens[0].equals("int") || tokens[0].equals("interval")) {
+          kinds[size] = tokens[0];
+          values[size++] = Integer.parseInt(tokens[1]);
+        } else if (tokens[0].equals("boolean")) {
+          kinds[size] = tokens[0];
+          values[size++] = Boolean.parseBoolean(tokens[1]) ? 1 : 0;
+        } else if (!tokens[0].isEmpty()) {
+          throw new JPFException("illegal choice in " + choicesFile + ": " + line);
+        }
+      }
+      kinds = Arrays.copyOf(kinds, size);
+      values = Arrays.copyOf(values, size);
+      index = 0;
+    }
+
+    public static void write(String choicesFile, ChoiceGenerator<?>[] cgs) {
+      try (PrintWriter writer = new PrintWriter(new FileWriter(choicesFile))) {
+        for (ChoiceGenerator<?> cg : cgs) {
+          String kind = getKind(cg);
+          if (kind != null) {
+            writer.println(kind + " " + cg.getNextChoice());
+          }
+        }
+      } catch (IOException e) {
+      }
+    }
+
+    public boolean hasMoreChoices() {
+      return index < values.length;
+    }
+
+    // Return the kind of the CG in a choice path (null if its choices are not recorded)
+    public static String getKind(ChoiceGenerator<?> cg) {
+      if (cg instanceof IntChoiceFromSet) {
+        return "int";
+      } else if (cg instanceof BooleanChoiceGenerator) {
+        return "boolean";
+      } else if (cg instanceof IntIntervalGenerator) {
+        return "interval";
+      }
+      return null;
+    }
+
+    // Return the value of a choice as it is recorded
+    public static int toValue(Object choice) {
+      if (choice instanceof Boolean) {
+        return (Boolean) choice ? 1 : 0;
+      }
+      return (Integer) choice;
+    }
+
+    public String getNextKind() {
+      return kinds[index];
+    }
+
+    // Consume the next choice
+    public int nextValue() {
+      return values[index++];
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public int size() {
+      return values.length;
+    }
+  }
+
+  // This class is an asynchronous logger for the state events of the verbose mode
+  // The search thread writes fixed-size records (event, state ID, depth, flags) into a ring buffer without allocating,
+  // and a background thread formats the records and writes them to the output in large blocks
+  private static class TraceLogger implements Runnable {
+    private final static int RECORD_SIZE = 2;             // Number of longs per record
+    private final static int BLOCK_SIZE = 64 * 1024;      // Number of characters per write
+    private final long[] ring;
+    private final int mask;
+    private final int level;
+    private final int sampling;
+    private final OutputStream output;
+    private final boolean isOutputOwned;
+    private final Thread thread;
+    private volatile long head;       // Next record to write (only written by the search thread)
+    private volatile long tail;       // Next record to read (only written by the logger thread)
+    private volatile long written;    // Records written to the output (only written by the logger thread)
+    private volatile boolean isClosed;
+    private long numOfDebugEvents;
+    private long numOfWaits;
+
+    public TraceLogger(String traceFile, int level, int sampling, int capacity) {
+      // Round the capacity up to a power of 2 so that the ring index is a mask
+      int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+      ring = new long[size * RECORD_SIZE];
+      mask = size - 1;
+      this.level = level;
+      this.sampling = Math.max(sampling, 1);
+      OutputStream stream = System.out;
+      boolean isOwned = false;
+      if (!traceFile.isEmpty()) {
+        try {
+          stream = new FileOutputStream(traceFile, true);
+          isOwned = true;
+        } catch (IOException e) {
+          throw new JPFException("cannot open trace file " + traceFile);
+        }
+      }
+      output = stream;
+      isOutputOwned = isOwned;
+      head = 0;
+      tail = 0;
+      written = 0;
+      isClosed = false;
+      numOfDebugEvents = 0;
+      numOfWaits = 0;
+      thread = new Thread(this, "dpor-trace");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    public boolean isEnabled(int eventLevel) {
+      return eventLevel <= level;
+    }
+
+    // Log an event (called from the search thread): debug events are sampled
+    public void log(int event, int stateId, int depth, int flags) {
+      int eventLevel = TRACE_EVENT_LEVELS[event];
+      if (!isEnabled(eventLevel)) {
+        return;
+      }
+      if (eventLevel == TRACE_LEVEL_DEBUG && numOfDebugEvents++ % sampling != 0) {
+        return;
+      }
+      // Wait for the logger thread if the ring is full
+      while (head - tail > mask) {
+        numOfWaits++;
+        LockSupport.parkNanos(100000);
+      }
+      int index = (int) (head & mask) * RECORD_SIZE;
+      ring[index] = ((long) event << 32) | (flags & 0xFFFFFFFFL);
+      ring[index + 1] = ((long) stateId << 32) | (depth & 0xFFFFFFFFL);
+      // The volatile write publishes the record to the logger thread
+      head = head + 1;
+    }
+
+    // Drain the ring and stop the logger thread (called from the search thread)
+    public void close() {
+      isClosed = true;
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      try {
+        if (isOutputOwned) {
+          output.close();
+        } else {
+          output.flush();
+        }
+      } catch (IOException e) {
+      }
+    }
+
+    // Wait until the logger thread has written every logged record (called from the search thread)
+    public void flush() {
+      long currHead = head;
+      while (written < currHead && thread.isAlive()) {
+        LockSupport.unpark(thread);
+        LockSupport.parkNanos(10000);
+      }
+    }
+
+    // Return a writer to the output of the logger that flushes the logger before each write
+    public Writer getOrderedWriter() {
+      final Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+      return new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+          TraceLogger.this.flush();
+          writer.write(buffer, offset, length);
+          writer.flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+          writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+          writer.flush();
+        }
+      };
+    }
+
+    // Number of records written to the output (after sampling)
+    public long getNumOfTracedEvents() {
+      return written;
+    }
+
+    public long getNumOfWaits() {
+      return numOfWaits;
+    }
+
+    @Override
+    public void run() {
+      StringBuilder block = new StringBuilder(BLOCK_SIZE + 256);
+      while (true) {
+        // Read the closed flag before the head so that the last records are not lost
+        boolean isLast = isClosed;
+        long currHead = head;
+        while (tail < currHead) {
+          int index = (int) (tail & mask) * RECORD_SIZE;
+          long eventAndFlags = ring[index];
+          long stateAndDepth = ring[index + 1];
+          // The volatile write frees the slot for the search thread
+          tail = tail + 1;
+          format(block, (int) (eventAndFlags >>> 32), (int) eventAndFlags, (int) (stateAndDepth >>> 32),
+                  (int) stateAndDepth);
+          if (block.length() >= BLOCK_SIZE) {
+            write(block);
+          }
+        }
+        if (isLast) {
+          write(block);
+          written = currHead;
+          return;
+        }
+        if (block.length() > 0) {
+          write(block);
+        }
+        written = currHead;
+        LockSupport.parkNanos(1000000);
+      }
+    }
+
+    private void format(StringBuilder block, int event, int flags, int stateId, int depth) {
+      switch (event) {
+        case TRACE_SEARCH_STARTED:
+          block.append("\n==> DEBUG: ----------------------------------- search started\n\n");
+          break;
+        case TRACE_END_STATE:
+          block.append("\n==> DEBUG: This is the last state!\n\n");
+          break;
+        case TRACE_STATE_ADVANCED:
+          block.append("\n==> DEBUG: The state is forwarded to state with id: ").append(stateId)
+                  .append(" with depth: ").append(depth).append(" which is ")
+                  .append((flags & TRACE_FLAG_NEW) != 0 ? "new" : "visited")
+                  .append((flags & TRACE_FLAG_END) != 0 ? " end" : "").append("\n\n");
+          break;
+        case TRACE_STATE_BACKTRACKED:
+          block.append("\n==> DEBUG: The state is backtracked to state with id: ").append(stateId)
+                  .append(" and depth: ").append(depth).append("\n\n");
+          break;
+        case TRACE_STATE_RESTORED:
+          block.append("\n==> DEBUG: The state is restored to state with id: ").append(stateId)
+                  .append(" and depth: ").append(depth).append("\n\n");
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void write(StringBuilder block) {
+      try {
+        output.write(block.toString().getBytes(StandardCharsets.UTF_8));
+        output.flush();
+      } catch (IOException e) {
+      }
+      block.setLength(0);
+    }
+  }
+
+  // This class records a compact binary log of the search events (see DporTraceReader for the format)
+  // Records are zigzag varints written into a direct buffer that is flushed through a file channel when it is full;
+  // the methods are synchronized because the pipelined analysis creates backtrack points in its own thread
+  private static class TraceRecorder {
+    private final static int BUFFER_SIZE = 1 << 20;
+    private final static int MAX_RECORD_BYTES = 32;      // Enough for a record of at most 5 varints
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private int numOfRecordedFieldNames;
+    private long numOfBytes;
+
+    public TraceRecorder(String traceFile) {
+      try {
+        channel = FileChannel.open(Paths.get(traceFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+      } catch (IOException e) {
+        throw new JPFException("cannot open exploration trace " + traceFile);
+      }
+      buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      buffer.put(DporTraceReader.MAGIC);
+      numOfRecordedFieldNames = 0;
+      numOfBytes = 0;
+    }
+
+    public synchronized void recordStateAdvanced(int stateId, int depth, int flags) {
+      ensureCapacity(MAX_RECORD_BYTES);
+      buffer.put((byte) DporTraceReader.STATE_ADVANCED);
+      putVarInt(stateId);
+      putVarInt(depth);
+      putVarInt(flags);
+    }
+
+    public synchronized void recordStateBacktracked(int stateId, int depth) {
+      record(DporTraceReader.STATE_BACKTRACKED, stateId, depth);
+    }
+
+    public synchronized void recordTransition(int stateId, int choice, int choiceCounter) {
+      ensureCapacity(MAX_RECORD_BYTES);
+      buffer.put((byte) DporTraceReader.TRANSITION);
+      putVarInt(stateId);
+      putVarInt(choice);
+      putVarInt(choiceCounter);
+    }
+
+    public synchronized void recordBacktrackPoint(boolean isCreated, int stateId, int choice) {
+      record(isCreated ? DporTraceReader.BACKTRACK_CREATED : DporTraceReader.BACKTRACK_CONSUMED, stateId, choice);
+    }
+
+    public synchronized void recordExecutionStarted(int executionId, int numOfExecutions) {
+      record(DporTraceReader.EXECUTION_STARTED, executionId, numOfExecutions);
+    }
+
+    // Record the R/W set of a transition: the names of new field IDs are recorded first
+    public synchronized void recordReadWriteSet(int choiceCounter, ReadWriteSet rwSet, ArrayList<String> fieldNames) {
+      int numOfFieldNames = fieldNames.size();
+      while (numOfRecordedFieldNames < numOfFieldNames) {
+        byte[] name = fieldNames.get(numOfRecordedFieldNames).getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(MAX_RECORD_BYTES + name.length);
+        buffer.put((byte) DporTraceReader.FIELD_NAME);
+        putVarInt(numOfRecordedFieldNames);
+        putVarInt(name.length);
+        // A name larger than the buffer is written in chunks
+        for (int offset = 0; offset < name.length; ) {
+          ensureCapacity(1);
+          int length = Math.min(name.length - offset, buffer.remaining());
+          buffer.put(name, offset, length);
+          offset += length;
+        }
+        numOfRecordedFieldNames++;
+      }
+      ensureCapacity(MAX_RECORD_BYTES);
+      buffer.put((byte) DporTraceReader.RW_SET);
+      putVarInt(choiceCounter);
+      putVarInt(rwSet.getNumOfReadFields());
+      for (int i = 0; i < rwSet.getNumOfReadFields(); i++) {
+        ensureCapacity(MAX_RECORD_BYTES);
+        putVarInt(rwSet.getReadFieldId(i));
+        putVarInt(rwSet.getReadObjectId(i));
+      }
+      ensureCapacity(MAX_RECORD_BYTES);
+      putVarInt(rwSet.getNumOfWriteFields());
+      for (int i = 0; i < rwSet.getNumOfWriteFields(); i++) {
+        ensureCapacity(MAX_RECORD_BYTES);
+        putVarInt(rwSet.getWriteFieldId(i));
+        putVarInt(rwSet.getWriteObjectId(i));
+      }
+    }
+
+    public synchronized void close() {
+      flush();
+      try {
+        channel.close();
+      } catch (IOException e) {
+      }
+    }
+
+    public synchronized long getNumOfBytes() {
+      return numOfBytes + buffer.position();
+    }
+
+    private void record(int type, int arg0, int arg1) {
+      ensureCapacity(MAX_RECORD_BYTES);
+      buffer.put((byte) type);
+      putVarInt(arg0);
+      putVarInt(arg1);
+    }
+
+    private void putVarInt(int value) {
+      // Zigzag encoding keeps small negative values (e.g., state ID -1) short
+      int zigzag = (value << 1) ^ (value >> 31);
+      while ((zigzag & ~0x7F) != 0) {
+        buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+        zigzag >>>= 7;
+      }
+      buffer.put((byte) zigzag);
+    }
+
+    private void ensureCapacity(int numOfBytesNeeded) {
+      if (buffer.remaining() < numOfBytesNeeded) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      buffer.flip();
+      try {
+        while (buffer.hasRemaining()) {
+          numOfBytes += channel.write(buffer);
+        }
+      } catch (IOException e) {
+        throw new JPFException("cannot write exploration trace: " + e.getMessage());
+      }
+      buffer.clear();
+    }
+  }
+
+  // This class is the experimental wakeup-tree engine (dpor_engine=wakeup_trees): it borrows the race reversal and
+  // the wakeup trees of optimal DPOR, adapted to the event loop and state matching, but it is not optimal DPOR:
+  // 1) a race between a transition and a later event is reversed by a wakeup sequence: the events between the two
+  //    that do not happen after the transition (notdep), followed by the later event,
+  // 2) the sequence is inserted into the wakeup tree of the state: only a new branch at the root becomes a new
+  //    backtrack point. A backtrack execution follows the leftmost path of its branch, and the other branches on the
+  //    way are handed over to the states that the execution reaches.
+  // The races come from the backward DFS and from the main summary when a state is revisited (the later event is
+  // then the summary event), so the termination still relies on the main summary and the R-Graph.
+  // There are no sleep sets (hence no optimality): with state matching, an event explored from a state does not mean
+  // that its subtree is explored (the execution may have been cut short by a revisit). A branch whose first event is
+  // a consumed backtrack point of its state is dropped like in the default engine, and the main summary covers the
+  // rest of the branch. The engine only orders the choice lists differently from the default engine.
+  // Events can occur many times in an execution, but a wakeup sequence has distinct events since it becomes the
+  // front of a choice list.
+  private class WakeupTreeEngine {
+    private final ArrayList<Integer> pathEvents;              // Events on the path of the backward DFS (origin first)
+    private final ArrayList<ReadWriteSet> pathRWSets;
+    private final HashMap<Integer, WakeupNode> wakeupTrees;   // Roots of the wakeup trees indexed by state ID
+    private ArrayList<WakeupNode> executionPath;  // Leftmost path of the branch that the current execution follows
+    private int numOfRaces;
+    private int numOfCoveredRaces;
+    private int numOfWakeupBranches;
+
+    public WakeupTreeEngine() {
+      pathEvents = new ArrayList<>();
+      pathRWSets = new ArrayList<>();
+      wakeupTrees = new HashMap<>();
+      executionPath = null;
+      numOfRaces = 0;
+      numOfCoveredRaces = 0;
+      numOfWakeupBranches = 0;
+    }
+
+    public int getNumOfRaces() {
+      return numOfRaces;
+    }
+
+    public int getNumOfCoveredRaces() {
+      return numOfCoveredRaces;
+    }
+
+    public int getNumOfWakeupBranches() {
+      return numOfWakeupBranches;
+    }
+
+    // The wakeup trees are per boolean CG round (like the backtrack points)
+    public void reset() {
+      wakeupTrees.clear();
+      executionPath = null;
+    }
+
+    public int getPathSize() {
+      return pathEvents.size();
+    }
+
+    public void pushTransition(int eventChoice, ReadWriteSet rwSet) {
+      pathEvents.add(eventChoice);
+      pathRWSets.add(rwSet == null ? ReadWriteSet.EMPTY : rwSet);
+    }
+
+    public void popTransition() {
+      pathEvents.remove(pathEvents.size() - 1);
+      pathRWSets.remove(pathRWSets.size() - 1);
+    }
+
+    // Reverse the race between the transition and the later event at the given depth of the DFS path
+    public void reverseRace(int stateId, TransitionEvent conflictTransition, ReadWriteSet conflictRWSet,
+                            int laterEventChoice, int conflictDepth) {
+      numOfRaces++;
+      // The wakeup sequence: the notdep events in the execution order (the path is stored backward)
+      ArrayList<Integer> events = new ArrayList<>();
+      ArrayList<ReadWriteSet> rwSets = new ArrayList<>();
+      ReadWriteSet happensAfter = conflictRWSet == null ? ReadWriteSet.EMPTY : conflictRWSet;
+      for (int i = pathEvents.size() - 1; i > conflictDepth; i--) {
+        ReadWriteSet rwSet = pathRWSets.get(i);
+        if (rwSet.conflictsWith(happensAfter)) {
+          happensAfter = happensAfter.union(rwSet);
+        } else if (pathEvents.get(i) != laterEventChoice && !events.contains(pathEvents.get(i))) {
+          events.add(pathEvents.get(i));
+          rwSets.add(rwSet);
+        }
+      }
+      // Followed by the later event
+      events.add(laterEventChoice);
+      rwSets.add(pathRWSets.get(conflictDepth));
+      WakeupNode root = wakeupTrees.get(stateId);
+      if (root == null) {
+        root = new WakeupNode(-1, ReadWriteSet.EMPTY);
+        wakeupTrees.put(stateId, root);
+      }
+      // Follow the branches whose event is a weak initial of the rest of the sequence
+      WakeupNode node = root;
+      while (true) {
+        if (node != root && node.isLeaf()) {
+          // The sequence is covered by a pending backtrack execution
+          numOfCoveredRaces++;
+          return;
+        }
+        WakeupNode nextNode = null;
+        for (WakeupNode child : node.getChildren()) {
+          if (isWeakInitial(child.getEvent(), child.getRWSet(), events, rwSets)) {
+            nextNode = child;
+            break;
+          }
+        }
+        if (nextNode == null) {
+          break;
+        }
+        int index = events.indexOf(nextNode.getEvent());
+        if (index >= 0) {
+          events.remove(index);
+          rwSets.remove(index);
+        }
+        node = nextNode;
+      }
+      if (events.isEmpty()) {
+        numOfCoveredRaces++;
+        return;
+      }
+      WakeupNode branch = node.addBranch(events, rwSets);
+      if (node == root) {
+        addWakeupBranch(stateId, branch, conflictTransition);
+      }
+    }
+
+    // Start a backtrack execution: its branch leaves the wakeup tree of the state
+    public void startExecution(int stateId, BacktrackExecution backtrackExecution) {
+      WakeupNode branch = backtrackExecution.getWakeupBranch();
+      executionPath = branch == null ? null : branch.getLeftmostPath();
+      WakeupNode root = wakeupTrees.get(stateId);
+      if (branch != null && root != null) {
+        root.getChildren().remove(branch);
+      }
+    }
+
+    // Hand over the branches that leave the path of the execution at the state of the transition
+    public void recordTransition(int stateId, TransitionEvent transition, int choiceCounter) {
+      if (executionPath == null) {
+        return;
+      }
+      if (choiceCounter >= executionPath.size()) {
+        executionPath = null;
+        return;
+      }
+      if (choiceCounter > 0) {
+        WakeupNode followedNode = executionPath.get(choiceCounter);
+        for (WakeupNode child : executionPath.get(choiceCounter - 1).getChildren()) {
+          if (child != followedNode) {
+            handOverBranch(stateId, child, transition);
+          }
+        }
+      }
+    }
+
+    private void handOverBranch(int stateId, WakeupNode branch, TransitionEvent transition) {
+      WakeupNode root = wakeupTrees.get(stateId);
+      if (root == null) {
+        root = new WakeupNode(-1, ReadWriteSet.EMPTY);
+        wakeupTrees.put(stateId, root);
+      }
+      root.getChildren().add(branch);
+      addWakeupBranch(stateId, branch, transition);
+    }
+
+    private void addWakeupBranch(int stateId, WakeupNode branch, TransitionEvent conflictTransition) {
+      WakeupNode root = wakeupTrees.get(stateId);
+      if (isTraceAlreadyConstructed(branch.getEvent(), stateId) ||
+              !addNewBacktrackPoint(stateId, branch.getEvent(), conflictTransition, branch)) {
+        root.getChildren().remove(branch);
+        return;
+      }
+      numOfWakeupBranches++;
+    }
+
+    // An event is a weak initial of a sequence if it is independent of the events before its first occurrence,
+    // or of the whole sequence if it does not occur in it (an unknown R/W set is not independent)
+    private boolean isWeakInitial(int event, ReadWriteSet rwSet, ArrayList<Integer> events,
+                                  ArrayList<ReadWriteSet> rwSets) {
+      int index = events.indexOf(event);
+      if (index >= 0) {
+        rwSet = rwSets.get(index);
+      } else if (rwSet == null) {
+        return false;
+      } else {
+        index = events.size();
+      }
+      for (int i = 0; i < index; i++) {
+        if (rwSet.conflictsWith(rwSets.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  // This class is a node of a wakeup tree: the path from the root is a sequence of events to explore from a state
+  private static class WakeupNode {
+    private final int event;
+    private final ReadWriteSet rwSet;
+    private final ArrayList<WakeupNode> children;   // The leftmost child is explored first
 
-    public MainSummary() {
-      mainSummary = new HashMap<>();
+    public WakeupNode(int event, ReadWriteSet rwSet) {
+      this.event = event;
+      this.rwSet = rwSet;
+      children = new ArrayList<>();
     }
 
-    public Set<Integer> getEventChoicesAtStateId(int stateId) {
-      HashMap<Integer, ReadWriteSet> stateSummary = mainSummary.get(stateId);
-      // Return a new set since this might get updated concurrently
-      return new HashSet<>(stateSummary.keySet());
+    public int getEvent() {
+      return event;
     }
 
-    public ReadWriteSet getRWSetForEventChoiceAtState(int eventChoice, int stateId) {
-      HashMap<Integer, ReadWriteSet> stateSummary = mainSummary.get(stateId);
-      return stateSummary.get(eventChoice);
+    public ReadWriteSet getRWSet() {
+      return rwSet;
     }
 
-    public Set<Integer> getStateIds() {
-      return mainSummary.keySet();
+    public ArrayList<WakeupNode> getChildren() {
+      return children;
     }
 
-    private ReadWriteSet performUnion(ReadWriteSet recordedRWSet, ReadWriteSet rwSet) {
-      // Combine the same write accesses and record in the recordedRWSet
-      HashMap<String, Integer> recordedWriteMap = recordedRWSet.getWriteMap();
-      HashMap<String, Integer> writeMap = rwSet.getWriteMap();
-      for(Map.Entry<String, Integer> entry : recordedWriteMap.entrySet()) {
-        String writeField = entry.getKey();
-        // Remove the entry from rwSet if both field and object ID are the same
-        if (writeMap.containsKey(writeField) &&
-                (writeMap.get(writeField).equals(recordedWriteMap.get(writeField)))) {
-          writeMap.remove(writeField);
-        }
-      }
-      // Then add the rest (fields in rwSet but not in recordedRWSet)
-      // into the recorded map because these will be traversed
-      recordedWriteMap.putAll(writeMap);
-      // Combine the same read accesses and record in the recordedRWSet
-      HashMap<String, Integer> recordedReadMap = recordedRWSet.getReadMap();
-      HashMap<String, Integer> readMap = rwSet.getReadMap();
-      for(Map.Entry<String, Integer> entry : recordedReadMap.entrySet()) {
-        String readField = entry.getKey();
-        // Remove the entry from rwSet if both field and object ID are the same
-        if (readMap.containsKey(readField) &&
-                (readMap.get(readField).equals(recordedReadMap.get(readField)))) {
-          readMap.remove(readField);
-        }
-      }
-      // Then add the rest (fields in rwSet but not in recordedRWSet)
-      // into the recorded map because these will be traversed
-      recordedReadMap.putAll(readMap);
+    public boolean isLeaf() {
+      return children.isEmpty();
+    }
 
-      return rwSet;
+    // Add the sequence as the rightmost branch and return the first node of the branch
+    public WakeupNode addBranch(ArrayList<Integer> events, ArrayList<ReadWriteSet> rwSets) {
+      WakeupNode branch = new WakeupNode(events.get(0), rwSets.get(0));
+      children.add(branch);
+      WakeupNode node = branch;
+      for (int i = 1; i < events.size(); i++) {
+        WakeupNode child = new WakeupNode(events.get(i), rwSets.get(i));
+        node.children.add(child);
+        node = child;
+      }
+      return branch;
     }
 
-    public ReadWriteSet updateStateSummary(int stateId, int eventChoice, ReadWriteSet rwSet) {
-      // If the state Id has not existed, insert the StateSummary object
-      // If the state Id has existed, find the event choice:
-      // 1) If the event choice has not existed, insert the ReadWriteSet object
-      // 2) If the event choice has existed, perform union between the two ReadWriteSet objects
-      if (!rwSet.isEmpty()) {
-        HashMap<Integer, ReadWriteSet> stateSummary;
-        if (!mainSummary.containsKey(stateId)) {
-          stateSummary = new HashMap<>();
-          stateSummary.put(eventChoice, rwSet.getCopy());
-          mainSummary.put(stateId, stateSummary);
-        } else {
-          stateSummary = mainSummary.get(stateId);
-          if (!stateSummary.containsKey(eventChoice)) {
-            stateSummary.put(eventChoice, rwSet.getCopy());
-          } else {
-            rwSet = performUnion(stateSummary.get(eventChoice), rwSet);
-          }
-        }
+    // Return the nodes from this node to its leftmost leaf
+    public ArrayList<WakeupNode> getLeftmostPath() {
+      ArrayList<WakeupNode> path = new ArrayList<>();
+      WakeupNode node = this;
+      path.add(node);
+      while (!node.isLeaf()) {
+        node = node.children.get(0);
+        path.add(node);
       }
-      return rwSet;
+      return path;
     }
   }
 
   // -- CONSTANTS
   private final static String DO_CALL_METHOD = "doCall";
+  private final static long TIMEOUT_CHECK_MASK = (1 << 12) - 1;   // The timeout is checked every 4096 instructions
   // We exclude fields that come from libraries (Java and Groovy), and also the infrastructure
   private final static String[] EXCLUDED_FIELDS_CONTAINS_LIST = {"_closure"};
   private final static String[] EXCLUDED_FIELDS_ENDS_WITH_LIST =
@@ -781,29 +2889,156 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   private final static String GROOVY_CALLSITE_LIB = "org.codehaus.groovy.runtime.callsite";
   private final static String JAVA_INTEGER = "int";
   private final static String JAVA_STRING_LIB = "java.lang.String";
+  // Rough object sizes (in bytes) used to estimate the memory reclaimed
+  private final static long REFERENCE_BYTES = 8;
+  private final static long MAP_ENTRY_BYTES = 32;
+  private final static long TRANSITION_BYTES = 48;
+  private final static long PREDECESSOR_BYTES = 24;
+  // Rough restore cost of one transition of distance (in heap objects) used by the restore-aware scheduling
+  private final static long RESTORE_COST_PER_TRANSITION = 64;
+  // Trace levels, events (indexes of TRACE_EVENT_LEVELS), and flags of the trace logger
+  private final static int TRACE_LEVEL_OFF = 0;
+  private final static int TRACE_LEVEL_INFO = 1;
+  private final static int TRACE_LEVEL_DEBUG = 2;
+  private final static int TRACE_SEARCH_STARTED = 0;
+  private final static int TRACE_END_STATE = 1;
+  private final static int TRACE_STATE_ADVANCED = 2;
+  private final static int TRACE_STATE_BACKTRACKED = 3;
+  private final static int TRACE_STATE_RESTORED = 4;
+  private final static int[] TRACE_EVENT_LEVELS =
+          {TRACE_LEVEL_INFO, TRACE_LEVEL_INFO, TRACE_LEVEL_DEBUG, TRACE_LEVEL_DEBUG, TRACE_LEVEL_DEBUG};
+  private final static int TRACE_FLAG_NEW = 1;
+  private final static int TRACE_FLAG_END = 2;
 
   // -- FUNCTIONS
-  private Integer[] copyChoices(Integer[] choicesToCopy) {
+  private void advanceEventChoice(IntChoiceFromSet icsCG, VM vm, boolean isAnalysisDeferred) {
+    // If this is a new CG then we need to update data structures
+    resetStatesForNewExecution(icsCG, vm);
+    // Record the R/W set of the executed event (transition): one transition before this one
+    if (traceRecorder != null && choiceCounter > 0) {
+      ReadWriteSet rwSet = currentExecution.getReadWriteFieldsMap().get(choiceCounter - 1);
+      traceRecorder.recordReadWriteSet(choiceCounter - 1, rwSet == null ? ReadWriteSet.EMPTY : rwSet, fieldNames);
+    }
+    // Learn the footprint and the effect of the executed event (transition): one transition before this one
+    if (eventEquivalenceMode && choiceCounter > 0) {
+      learnEventEquivalence(currentExecution, choiceCounter - 1, vm.getStateId());
+    }
+    // If we don't see a fair scheduling of events/choices then we have to enforce it
+    ensureFairSchedulingAndSetupTransition(icsCG, vm);
+    // Update backtrack set of an executed event (transition): one transition before this one
+    if (isAnalysisDeferred) {
+      pendingAnalysisTask = createAnalysisTask(currentExecution, choiceCounter - 1);
+    } else {
+      updateBacktrackSet(currentExecution, choiceCounter - 1);
+    }
+    // Seed backtrack points from the first round along the first execution of the second round
+    if (roundSeeds != null && currentExecution == firstExecution) {
+      seedBacktrackPoints(vm.getStateId());
+    }
+    // Explore the next backtrack point:
+    // 1) if we have seen this state or this state contains cycles that involve all events, and
+    // 2) after the current CG is advanced at least once
+    if (choiceCounter > 0 && terminateCurrentExecution()) {
+      exploreNextBacktrackPoints(vm, icsCG);
+    } else {
+      // We only count IntChoiceFromSet CGs
+      numOfTransitions++;
+      countUniqueTransitions(vm.getStateId(), getNextChoice(icsCG));
+    }
+    // Map state to event
+    mapStateToEvent(getNextChoice(icsCG));
+    justVisitedStates.clear();
+    choiceCounter++;
+    // Check the budgets after every transition
+    if (anytimeMode && budgetExhausted == null) {
+      checkBudgets(vm);
+    }
+    // Degrade the analysis step by step under memory pressure
+    if (memoryGovernor != null) {
+      if (memoryGovernor.checkAfterStep()) {
+        reportMemoryGovernor("Memory governor step " + memoryGovernor.getNumOfSteps() + " freed " +
+                Math.max(memoryGovernor.getUsageBeforeStep() - memoryGovernor.getUsageAfterStep(), 0) / (1024 * 1024) +
+                " MB (heap after the next collection " + memoryGovernor.getUsageAfterStep() / (1024 * 1024) + " MB)");
+      }
+      if (budgetExhausted == null && memoryGovernor.isUnderPressure()) {
+        relieveMemoryPressure(vm);
+      }
+    }
+  }
 
-    Integer[] copyOfChoices = new Integer[choicesToCopy.length];
+  private int[] copyChoices(int[] choicesToCopy) {
+
+    int[] copyOfChoices = new int[choicesToCopy.length];
     System.arraycopy(choicesToCopy, 0, copyOfChoices, 0, choicesToCopy.length);
     return copyOfChoices;
   }
 
+  private BacktrackStatePriority createBacktrackStatePriority(String order, String eventAppMapFile) {
+    if (order.equals("highest_state_id")) {
+      return new HighestStateIdFirst();
+    } else if (order.equals("write_write_overlaps")) {
+      return new WriteWriteOverlapsFirst();
+    } else if (order.equals("cross_app")) {
+      if (eventAppMapFile.isEmpty()) {
+        throw new JPFException("backtrack_state_order=cross_app requires event_app_map");
+      }
+      try {
+        List<String> eventApps = Files.readAllLines(Paths.get(eventAppMapFile));
+        return new CrossAppFirst(eventApps.toArray(new String[0]));
+      } catch (IOException e) {
+        throw new JPFException("cannot read event_app_map: " + eventAppMapFile);
+      }
+    } else if (order.equals("least_explored")) {
+      return new LeastExploredFirst();
+    }
+    throw new JPFException("unknown backtrack_state_order: " + order);
+  }
+
+  private WakeupTreeEngine createDporEngine(String engine) {
+    if (engine.equals("summary")) {
+      return null;
+    } else if (engine.equals("wakeup_trees")) {
+      // The engine state is not synchronized and has to be updated in transition order by the search thread
+      if (pipelinedMode) {
+        throw new JPFException("dpor_engine=wakeup_trees cannot be combined with pipelined_analysis");
+      }
+      return new WakeupTreeEngine();
+    }
+    throw new JPFException("unknown dpor_engine: " + engine);
+  }
+
+  private int parseTraceLevel(String level) {
+    if (level.equals("off")) {
+      return TRACE_LEVEL_OFF;
+    } else if (level.equals("info")) {
+      return TRACE_LEVEL_INFO;
+    } else if (level.equals("debug")) {
+      return TRACE_LEVEL_DEBUG;
+    }
+    throw new JPFException("unknown trace_level: " + level);
+  }
+
   private void ensureFairSchedulingAndSetupTransition(IntChoiceFromSet icsCG, VM vm) {
     // Check the next choice and if the value is not the same as the expected then force the expected value
     int choiceIndex = choiceCounter % refChoices.length;
-    int nextChoice = icsCG.getNextChoice();
+    DporIntChoiceGenerator dporChoices = icsCG.getDporChoices();
+    int nextChoice = dporChoices.getNextChoice();
     if (refChoices[choiceIndex] != nextChoice) {
       int expectedChoice = refChoices[choiceIndex];
-      int currCGIndex = icsCG.getNextChoiceIndex();
+      int currCGIndex = dporChoices.getNextChoiceIndex();
       if ((currCGIndex >= 0) && (currCGIndex < refChoices.length)) {
-        icsCG.setChoice(currCGIndex, expectedChoice);
+        dporChoices.setChoice(currCGIndex, expectedChoice);
       }
     }
     // Get state ID and associate it with this transition
     int stateId = vm.getStateId();
     TransitionEvent transition = setupTransition(icsCG, stateId, choiceIndex);
+    if (wakeupTreeEngine != null) {
+      wakeupTreeEngine.recordTransition(stateId, transition, choiceCounter);
+    }
+    if (traceRecorder != null) {
+      traceRecorder.recordTransition(stateId, transition.getChoice(), choiceCounter);
+    }
     // Add new transition to the current execution and map it in R-Graph
     for (Integer stId : justVisitedStates) {  // Map this transition to all the previously passed states
       rGraph.addReachableTransition(stId, transition);
@@ -813,6 +3048,10 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     if (!restorableStateMap.containsKey(stateId)) {
       RestorableVMState restorableState = vm.getRestorableState();
       restorableStateMap.put(stateId, restorableState);
+      if (restoreAwareMode) {
+        // The heap size approximates the snapshot size and the choice counter approximates the depth
+        restoreCostMap.put(stateId, new int[] { vm.getHeap().size(), choiceCounter });
+      }
     }
   }
 
@@ -836,32 +3075,288 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     return transition;
   }
 
-  // --- Functions related to statistics counting
-  // Count unique state IDs
-  private void countUniqueTransitions(int stateId, int nextChoiceValue) {
-    HashSet<Integer> events;
-    // Get the set of events
-    if (!stateToUniqueTransMap.containsKey(stateId)) {
-      events = new HashSet<>();
-      stateToUniqueTransMap.put(stateId, events);
+  private int getNextChoice(IntChoiceFromSet icsCG) {
+    DporIntChoiceGenerator dporChoices = icsCG.getDporChoices();
+    if (dporChoices != null) {
+      return dporChoices.getNextChoice();
+    }
+    return icsCG.getNextChoice();
+  }
+
+  private int[] toIntChoices(Integer[] cgChoices) {
+    int[] intChoices = new int[cgChoices.length];
+    for (int i = 0; i < cgChoices.length; i++) {
+      intChoices[i] = cgChoices[i];
+    }
+    return intChoices;
+  }
+
+  // --- Functions related to the pipelined analysis
+  private Runnable createAnalysisTask(Execution execution, int currentChoice) {
+    // Nothing to analyze if the transition has no R/W set
+    if (execution.getReadWriteFieldsMap().get(currentChoice) == null) {
+      return null;
+    }
+    // The backward DFS sees the predecessors recorded so far: a predecessor records the execution and choice of its
+    // transition, and these only grow, so later predecessors are recognized by their execution and choice
+    int executionId = execution.getId();
+    return () -> {
+      analysisLock.lock();
+      try {
+        snapshotExecutionId = executionId;
+        snapshotChoice = currentChoice;
+        updateBacktrackSet(execution, currentChoice);
+      } catch (RuntimeException e) {
+        if (analysisFailure == null) {
+          analysisFailure = e;
+        }
+      } finally {
+        snapshotExecutionId = Integer.MAX_VALUE;
+        snapshotChoice = Integer.MAX_VALUE;
+        analysisLock.unlock();
+      }
+    };
+  }
+
+  // Wait until all the analysis handed over is done (must be called without holding the analysis lock)
+  private void drainAnalysis() {
+    if (lastAnalysisTask != null) {
+      try {
+        lastAnalysisTask.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        throw new JPFException("pipelined analysis failed: " + e.getCause());
+      }
+      lastAnalysisTask = null;
+      numOfAnalysisDrains++;
+    }
+    if (analysisFailure != null) {
+      throw new JPFException("pipelined analysis failed: " + analysisFailure);
+    }
+  }
+
+  // Check if a just visited state may need the analysis of a revisited state or end the execution
+  // (the same conditions as terminateCurrentExecution() without the main summary)
+  private boolean isRevisitTriggerPossible() {
+    for (Integer stateId : justVisitedStates) {
+      if (prevVisitedStates.contains(stateId) || completeFullCycle(stateId) ||
+              (currVisitedStates.containsKey(stateId) && currVisitedStates.get(stateId) > 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Publish the R/W sets recorded by the interpreter since the last transition into the current execution
+  private void publishPendingReadWriteSets() {
+    HashMap<Integer, ReadWriteSet> rwFieldsMap = currentExecution.getReadWriteFieldsMap();
+    for (Map.Entry<Integer, ReadWriteSet> entry : pendingRWFieldsMap.entrySet()) {
+      ReadWriteSet rwSet = rwFieldsMap.get(entry.getKey());
+      rwFieldsMap.put(entry.getKey(), rwSet == null ? entry.getValue() : rwSet.union(entry.getValue()));
+    }
+    pendingRWFieldsMap.clear();
+  }
+
+  // Check the timeout (in the anytime mode, the time budget stops the exploration gracefully)
+  private void checkTimeout(VM vm, ThreadInfo ti) {
+    if (anytimeMode) {
+      if (budgetExhausted == null && maxTime > 0 && System.currentTimeMillis() - startTime > maxTime) {
+        stopExploration(vm, "time (" + (maxTime / (60 * 1000)) + " minutes)");
+      }
+    } else if (timeout > 0) {
+      if (System.currentTimeMillis() - startTime > timeout) {
+        StringBuilder sbTimeOut = new StringBuilder();
+        sbTimeOut.append("Execution timeout: " + (timeout / (60 * 1000)) + " minutes have passed!");
+        Instruction nextIns = ti.createAndThrowException("java.lang.RuntimeException", sbTimeOut.toString());
+        ti.setNextPC(nextIns);
+      }
+    }
+  }
+
+  // --- Functions related to the anytime mode
+  private void checkBudgets(VM vm) {
+    if (maxExecutions > 0 && executionList.size() > maxExecutions) {
+      stopExploration(vm, maxExecutions + " executions");
+    } else if (maxTransitions > 0 && numOfTransitions >= maxTransitions) {
+      stopExploration(vm, maxTransitions + " transitions");
+    } else if (maxTime > 0 && System.currentTimeMillis() - startTime > maxTime) {
+      stopExploration(vm, "time (" + (maxTime / (60 * 1000)) + " minutes)");
+    }
+  }
+
+  private void reportCoverage(int summaryOfUniqueTransitions) {
+    // Estimate the unique transitions as all the events at every state seen
+    int numOfEvents = maxEventChoice + 1;
+    long estimatedTransitions = uniqueTransitionCounter.getNumOfStates() * numOfEvents;
+    int numOfPendingBacktrackPoints = 0;
+    for (LinkedList<BacktrackExecution> backtrackExecutions : backtrackMap.values()) {
+      numOfPendingBacktrackPoints += backtrackExecutions.size();
+    }
+    long numOfStateEventPairs = (long) mainSummary.getStateIds().size() * numOfEvents;
+    double summarizedFraction = numOfStateEventPairs == 0 ? 0 :
+            (double) mainSummary.getNumOfSummarizedPairs() / numOfStateEventPairs;
+    out.println("\n==> DEBUG: Anytime budget exhausted            : " + budgetExhausted);
+    out.println("\n==> DEBUG: Number of executions                : " + numOfExecutions);
+    out.println("\n==> DEBUG: Unique transitions (seen/estimated) : " + summaryOfUniqueTransitions + "/" +
+            estimatedTransitions);
+    out.println("\n==> DEBUG: Number of pending backtrack points  : " + numOfPendingBacktrackPoints);
+    out.println("\n==> DEBUG: Summarized (state, event) pairs     : " + String.format("%.4f", summarizedFraction));
+  }
+
+  private void pinReplayedChoice(VM vm, ChoiceGenerator<?> nextCG) {
+    if (replayStopped != null) {
+      return;
+    }
+    String kind = ChoicePath.getKind(nextCG);
+    if (kind == null) {
+      // A CG that is not in the path cannot be pinned, so the replay would explore its other choices
+      if (nextCG.getTotalNumberOfChoices() > 1) {
+        nextCG.setDone();
+        stopReplay(vm, "diverged at choice " + replayPath.getIndex() + " (unrecorded " +
+                nextCG.getClass().getSimpleName() + ")");
+      }
+      return;
+    }
+    if (!replayPath.hasMoreChoices()) {
+      nextCG.setDone();
+      stopReplay(vm, "the conflict is not reproduced after " + replayPath.size() + " choices");
+      return;
+    }
+    if (!kind.equals(replayPath.getNextKind())) {
+      nextCG.setDone();
+      stopReplay(vm, "diverged at choice " + replayPath.getIndex() + " (unexpected " + kind + " CG)");
+      return;
+    }
+    int value = replayPath.nextValue();
+    if (!(nextCG instanceof IntChoiceFromSet)) {
+      // A boolean or interval CG cannot take new values: we skip the values before the replayed one
+      int choiceIndex = 0;
+      while (choiceIndex < nextCG.getTotalNumberOfChoices() &&
+              ChoicePath.toValue(nextCG.getChoice(choiceIndex)) != value) {
+        choiceIndex++;
+      }
+      if (choiceIndex == nextCG.getTotalNumberOfChoices()) {
+        nextCG.setDone();
+        stopReplay(vm, "diverged at choice " + (replayPath.getIndex() - 1) + " (" + value + " is not a choice)");
+        return;
+      }
+      replayedCG = nextCG;
+      replayedValue = value;
+      nextCG.advance(choiceIndex);
     } else {
-      events = stateToUniqueTransMap.get(stateId);
+      // Pin the event CG to the replayed event: it has no other choice to backtrack to
+      IntChoiceFromSet icsCG = (IntChoiceFromSet) nextCG;
+      if (!Arrays.asList(icsCG.getAllChoices()).contains(value)) {
+        icsCG.setDone();
+        stopReplay(vm, "diverged at choice " + (replayPath.getIndex() - 1) + " (event " + value + " is not a choice)");
+        return;
+      }
+      icsCG.setNewValues(new Integer[] { value });
     }
-    // Insert the event
-    if (!events.contains(nextChoiceValue)) {
-      events.add(nextChoiceValue);
+  }
+
+  private void checkReplayedChoice(VM vm) {
+    if (ChoicePath.toValue(replayedCG.getNextChoice()) != replayedValue) {
+      stopReplay(vm, "diverged at a " + ChoicePath.getKind(replayedCG) + " choice (" +
+              ChoicePath.toValue(replayedCG.getNextChoice()) + " instead of " + replayedValue + ")");
     }
+    // The CG has no other choice to backtrack to
+    replayedCG.setDone();
+    replayedCG = null;
   }
 
-  // Summarize unique state IDs
-  private int summarizeUniqueTransitions() {
-    // Just count the set size of each of entry map and sum them up
-    int numOfUniqueTransitions = 0;
-    for (Map.Entry<Integer,HashSet<Integer>> entry : stateToUniqueTransMap.entrySet()) {
-      numOfUniqueTransitions = numOfUniqueTransitions + entry.getValue().size();
+  private void stopReplay(VM vm, String reason) {
+    replayStopped = reason;
+    if (verboseMode) {
+      out.println("\n==> DEBUG: Replay stopped: " + reason + " -- the search is terminated\n");
     }
+    vm.getSearch().terminate();
+  }
+
+  private void relieveMemoryPressure(VM vm) {
+    int step = memoryGovernor.nextStep();
+    long usedHeap = memoryGovernor.getCollectionUsage();
+    String action;
+    switch (step) {
+      case 0:
+        // Step 1: switch the unique transition counting to the sketch (seeded with the transitions so far)
+        if (uniqueTransitionCounter instanceof ExactUniqueTransitionCounter) {
+          SketchedUniqueTransitionCounter sketchedCounter = new SketchedUniqueTransitionCounter(sketchPrecision);
+          ((ExactUniqueTransitionCounter) uniqueTransitionCounter).copyTo(sketchedCounter);
+          uniqueTransitionCounter = sketchedCounter;
+        }
+        action = "switched the unique transition counting to the sketch";
+        break;
+      case 1:
+        // Step 2: only keep the restorable states of the backtrack states and the current execution
+        action = "shrunk the restorable states (" + shrinkRestorableStates() + " removed)";
+        break;
+      case 2:
+        // Step 3: compact the predecessors and free the executions they do not reference
+        int numOfExecutionsBefore = numOfReclaimedExecutions;
+        int numOfPredecessorsBefore = numOfReclaimedPredecessors;
+        reclaimUnreachableExecutions();
+        action = "compacted the executions (" + (numOfReclaimedExecutions - numOfExecutionsBefore) +
+                " executions and " + (numOfReclaimedPredecessors - numOfPredecessorsBefore) +
+                " predecessors reclaimed)";
+        break;
+      default:
+        // Last resort: stop gracefully with partial statistics
+        reportMemoryGovernor("Memory governor step " + (step + 1) + ": stopping the search");
+        stopExploration(vm, "memory (heap above " + memoryThreshold + "%)");
+        return;
+    }
+    reportMemoryGovernor("Memory governor step " + (step + 1) + ": " + action + " -- heap before the step " +
+            usedHeap / (1024 * 1024) + " MB");
+    memoryGovernor.stepApplied(usedHeap);
+  }
+
+  // The governor actions are always reported (in the JPF log if the verbose mode is off)
+  private void reportMemoryGovernor(String message) {
+    if (verboseMode) {
+      out.println("\n==> DEBUG: " + message + "\n");
+    } else {
+      log.warning(message);
+    }
+  }
+
+  private int shrinkRestorableStates() {
+    HashSet<Integer> keptStateIds = new HashSet<>(backtrackMap.keySet());
+    for (TransitionEvent transition : currentExecution.getExecutionTrace()) {
+      keptStateIds.add(transition.getStateId());
+    }
+    keptStateIds.add(lastBacktrackStateId);
+    int numOfRemovedStates = 0;
+    Iterator<Integer> iterator = restorableStateMap.keySet().iterator();
+    while (iterator.hasNext()) {
+      int stateId = iterator.next();
+      if (!keptStateIds.contains(stateId)) {
+        iterator.remove();
+        restoreCostMap.remove(stateId);
+        numOfRemovedStates++;
+      }
+    }
+    isRestorableStateMapShrunk = true;
+    return numOfRemovedStates;
+  }
 
-    return numOfUniqueTransitions;
+  private void stopExploration(VM vm, String budget) {
+    budgetExhausted = budget;
+    if (verboseMode) {
+      out.println("\n==> DEBUG: Anytime budget exhausted: " + budget + " -- the search is terminated\n");
+    }
+    vm.getSearch().terminate();
+  }
+
+  // --- Functions related to statistics counting
+  // Count unique state IDs
+  private void countUniqueTransitions(int stateId, int nextChoiceValue) {
+    uniqueTransitionCounter.add(stateId, nextChoiceValue);
+  }
+
+  private int summarizeUniqueTransitions() {
+    return (int) uniqueTransitionCounter.getNumOfTransitions();
   }
 
   // --- Functions related to cycle detection and reachability graph
@@ -888,6 +3383,15 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     return true;
   }
 
+  private void resetAnalysisForNewRound() {
+    // Keep what the first round found along its first execution before it is reset
+    if (roundReuseMode) {
+      roundSeeds = new RoundSeeds(firstExecution, doneBacktrackMap);
+    }
+    // Allocate new objects for data structure when the boolean is flipped from "false" to "true"
+    initializeStatesVariables();
+  }
+
   private void initializeStatesVariables() {
     // DPOR-related
     choices = null;
@@ -912,19 +3416,33 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     } else {
       backtrackMap.clear();
     }
-    backtrackStateQ = new PriorityQueue<>(Collections.reverseOrder());
+    backtrackStateQ = new BacktrackStateQueue(backtrackStatePriority);
     currentExecution = new Execution();
     currentExecution.addTransition(new TransitionEvent()); // Always start with 1 backtrack point
+    firstExecution = currentExecution;
+    if (traceRecorder != null) {
+      traceRecorder.recordExecutionStarted(currentExecution.getId(), executionList.size());
+    }
     if (!isBooleanCGFlipped) {
       doneBacktrackMap = new HashMap<>();
     } else {
       doneBacktrackMap.clear();
     }
+    if (wakeupTreeEngine != null) {
+      wakeupTreeEngine.reset();
+    }
     rGraph = new RGraph();
     // Booleans
     isEndOfExecution = false;
   }
 
+  private void learnEventEquivalence(Execution execution, int currentChoice, int successorStateId) {
+    TransitionEvent currTrans = execution.getExecutionTrace().get(currentChoice);
+    ReadWriteSet rwSet = execution.getReadWriteFieldsMap().get(currentChoice);
+    eventClasses.recordFootprint(currTrans.getChoice(), rwSet == null ? ReadWriteSet.EMPTY : rwSet);
+    eventClasses.recordSuccessor(currTrans.getStateId(), currTrans.getChoice(), successorStateId);
+  }
+
   private void mapStateToEvent(int nextChoiceValue) {
     // Update all states with this event/choice
     // This means that all past states now see this transition
@@ -980,7 +3498,18 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
 
   // --- Functions related to Read/Write access analysis on shared fields
 
-  private void addNewBacktrackPoint(int stateId, Integer[] newChoiceList, TransitionEvent conflictTransition) {
+  // Return false if the backtrack point cannot be added
+  private boolean addNewBacktrackPoint(int stateId, int firstChoice, TransitionEvent conflictTransition,
+                                       WakeupNode wakeupBranch) {
+    // The state cannot be restored if the memory governor has dropped its restorable state
+    if (isRestorableStateMapShrunk && !restorableStateMap.containsKey(stateId)) {
+      numOfLostBacktrackPoints++;
+      if (numOfLostBacktrackPoints == 1) {
+        // The search is no longer exhaustive: the marker makes the result partial (see ModelCheck_DPOR.py)
+        reportMemoryGovernor("Anytime budget exhausted: memory (backtrack points lost) -- the search is partial");
+      }
+      return false;
+    }
     // Insert backtrack point to the right state ID
     LinkedList<BacktrackExecution> backtrackExecList;
     if (backtrackMap.containsKey(stateId)) {
@@ -991,11 +3520,19 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     }
     // Add the new backtrack execution object
     TransitionEvent backtrackTransition = new TransitionEvent();
-    backtrackExecList.addFirst(new BacktrackExecution(newChoiceList, backtrackTransition));
-    // Add to priority queue
+    backtrackExecList.addFirst(new BacktrackExecution(firstChoice, refChoices, backtrackTransition, wakeupBranch));
+    if (traceRecorder != null) {
+      traceRecorder.recordBacktrackPoint(true, stateId, firstChoice);
+    }
+    // Add to priority queue (or update the position of the state if its priority has changed)
+    boolean isPriorityChanged = backtrackStatePriority.recordBacktrackPoint(stateId, firstChoice,
+            conflictTransition.getChoice(), isWriteWriteConflict);
     if (!backtrackStateQ.contains(stateId)) {
       backtrackStateQ.add(stateId);
+    } else if (isPriorityChanged) {
+      backtrackStateQ.update(stateId);
     }
+    return true;
   }
 
   private void addPredecessors(int stateId) {
@@ -1013,16 +3550,14 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   private void analyzeReadWriteAccesses(Instruction executedInsn, int currentChoice) {
     // Get the field info
     FieldInfo fieldInfo = ((JVMFieldInstruction) executedInsn).getFieldInfo();
-    // Analyze only after being initialized
-    String fieldClass = fieldInfo.getFullName();
     // Do the analysis to get Read and Write accesses to fields
-    ReadWriteSet rwSet = getReadWriteSet(currentChoice);
     int objectId = fieldInfo.getClassInfo().getClassObjectRef();
     // Record the field in the map
     if (executedInsn instanceof WriteInstruction) {
       // We first check the non-relevant fields set
       if (!nonRelevantFields.contains(fieldInfo)) {
         // Exclude certain field writes because of infrastructure needs, e.g., Event class field writes
+        String fieldClass = fieldInfo.getFullName();
         for (String str : EXCLUDED_FIELDS_READ_WRITE_INSTRUCTIONS_STARTS_WITH_LIST) {
           if (fieldClass.startsWith(str)) {
             nonRelevantFields.add(fieldInfo);
@@ -1033,9 +3568,9 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
         // If we have this field in the non-relevant fields set then we return right away
         return;
       }
-      rwSet.addWriteField(fieldClass, objectId);
+      recordWriteField(currentChoice, getFieldId(fieldInfo), objectId);
     } else if (executedInsn instanceof ReadInstruction) {
-      rwSet.addReadField(fieldClass, objectId);
+      recordReadField(currentChoice, getFieldId(fieldInfo), objectId);
     }
   }
 
@@ -1044,8 +3579,7 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   private void analyzeReadWriteAccesses(Instruction instruction, ThreadInfo ti, int currentChoice) {
     // Get method name
     INVOKEINTERFACE insn = (INVOKEINTERFACE) instruction;
-    if (insn.toString().startsWith(GET_PROPERTY_METHOD) &&
-            insn.getMethodInfo().getName().equals(DO_CALL_METHOD)) {
+    if (!isInvokeExcluded(insn)) {
       // Extract info from the stack frame
       StackFrame frame = ti.getTopFrame();
       int[] frameSlots = frame.getSlots();
@@ -1078,59 +3612,86 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
       for(int i=0; i<numOfFields; i++) {
         FieldInfo fieldInfo = eiAccessObj.getFieldInfo(i);
         if (fieldInfo.getType().equals(JAVA_STRING_LIB) || fieldInfo.getType().equals(JAVA_INTEGER)) {
-          String fieldClass = fieldInfo.getFullName();
-          ReadWriteSet rwSet = getReadWriteSet(currentChoice);
           int objectId = fieldInfo.getClassInfo().getClassObjectRef();
           // Record the field in the map
-          rwSet.addReadField(fieldClass, objectId);
+          recordReadField(currentChoice, getFieldId(fieldInfo), objectId);
         }
       }
     }
   }
 
-  private int checkAndAdjustChoice(int currentChoice, VM vm) {
+  private int checkAndAdjustChoice(int currentChoice, ChoiceGenerator<?> currentCG) {
     // If current choice is not the same, then this is caused by the firing of IntIntervalGenerator
     // for certain method calls in the infrastructure, e.g., eventSince()
-    ChoiceGenerator<?> currentCG = vm.getChoiceGenerator();
-    // This is the main event CG
     if (currentCG instanceof IntIntervalGenerator) {
-      // This is the interval CG used in device handlers
-      ChoiceGenerator<?> parentCG = ((IntIntervalGenerator) currentCG).getPreviousChoiceGenerator();
-      // Iterate until we find the IntChoiceFromSet CG
-      while (!(parentCG instanceof IntChoiceFromSet)) {
-        parentCG = ((IntIntervalGenerator) parentCG).getPreviousChoiceGenerator();
-      }
-      // Find the choice related to the IntIntervalGenerator CG from the map
-      currentChoice = currentExecution.getChoiceFromCG((IntChoiceFromSet) parentCG);
+      // This is the interval CG used in device handlers: its choice is resolved when it is registered
+      currentChoice = currentExecution.getChoiceFromIntervalCG((IntIntervalGenerator) currentCG);
     }
     return currentChoice;
   }
 
-  private void createBacktrackingPoint(int eventChoice, Execution conflictExecution, int conflictChoice) {
+  // Find the choice of the event CG that an interval CG is nested in (null if that CG is not mapped)
+  private Integer resolveChoiceOfIntervalCG(IntIntervalGenerator intervalCG) {
+    ChoiceGenerator<?> parentCG = intervalCG.getPreviousChoiceGenerator();
+    // Iterate until we find the IntChoiceFromSet CG
+    while (parentCG != null && !(parentCG instanceof IntChoiceFromSet)) {
+      parentCG = parentCG.getPreviousChoiceGenerator();
+    }
+    // Find the choice related to the IntIntervalGenerator CG from the map
+    return currentExecution.getChoiceFromCG(parentCG);
+  }
+
+  private void createBacktrackingPoint(int eventChoice, Execution conflictExecution, int conflictChoice,
+                                       int conflictDepth) {
     // Create a new list of choices for backtrack based on the current choice and conflicting event number
     // E.g. if we have a conflict between 1 and 3, then we create the list {3, 1, 0, 2}
     // for the original set {0, 1, 2, 3}
     
     // eventChoice represents the event/transaction that will be put into the backtracking set of
     // conflictExecution/conflictChoice
-    Integer[] newChoiceList = new Integer[refChoices.length];
     ArrayList<TransitionEvent> conflictTrace = conflictExecution.getExecutionTrace();
     int stateId = conflictTrace.get(conflictChoice).getStateId();
-    // Check if this trace has been done from this state
-    if (isTraceAlreadyConstructed(eventChoice, stateId)) {
+    // Statically independent events never create backtrack points
+    if (staticFootprints != null &&
+            staticFootprints.isIndependent(eventChoice, conflictTrace.get(conflictChoice).getChoice())) {
+      numOfStaticallyIndependentPairs++;
       return;
     }
-    // Put the conflicting event numbers first and reverse the order
-    newChoiceList[0] = eventChoice;
-    // Put the rest of the event numbers into the array starting from the minimum to the upper bound
-    for (int i = 0, j = 1; i < refChoices.length; i++) {
-      if (refChoices[i] != newChoiceList[0]) {
-        newChoiceList[j] = refChoices[i];
-        j++;
+    // Only explore the representative of the class of this event if both are equivalent at this state
+    if (eventEquivalenceMode) {
+      int representative = eventClasses.getRepresentative(eventChoice);
+      if (representative != eventChoice && isEquivalentAt(stateId, eventChoice, representative)) {
+        eventChoice = representative;
+        numOfCollapsedBacktrackPoints++;
       }
     }
+    // The wakeup-tree engine reverses the race with a wakeup sequence (the later event is at the conflict depth of
+    // the DFS path)
+    if (wakeupTreeEngine != null) {
+      wakeupTreeEngine.reverseRace(stateId, conflictTrace.get(conflictChoice),
+              conflictExecution.getReadWriteFieldsMap().get(conflictChoice), eventChoice, conflictDepth);
+      return;
+    }
+    // Check if this trace has been done from this state
+    if (isTraceAlreadyConstructed(eventChoice, stateId)) {
+      return;
+    }
+    // The list is materialized from the conflicting event and the current order of events when it is consumed
     // Predecessor of the new backtrack point is the same as the conflict point's
-    addNewBacktrackPoint(stateId, newChoiceList, conflictTrace.get(conflictChoice));
+    addNewBacktrackPoint(stateId, eventChoice, conflictTrace.get(conflictChoice), null);
+  }
+
+  // The classes are built from footprints over all the transitions: two events of a class are only interchangeable
+  // at a state where both have been observed with the same R/W set and the same successor state
+  private boolean isEquivalentAt(int stateId, int eventChoice, int otherEventChoice) {
+    StateSummary stateSummary = mainSummary.getStateSummary(stateId);
+    if (stateSummary == null) {
+      return false;
+    }
+    ReadWriteSet rwSet = stateSummary.getRWSet(eventChoice);
+    ReadWriteSet otherRWSet = stateSummary.getRWSet(otherEventChoice);
+    return rwSet != null && rwSet.equals(otherRWSet) &&
+            eventClasses.isSameEffectAt(stateId, eventChoice, otherEventChoice);
   }
 
   private boolean excludeThisForItContains(String[] excludedStrings, String className) {
@@ -1168,16 +3729,31 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
       for (TransitionEvent backtrackTransition : currentExecution.getExecutionTrace()) {
         backtrackTransition.getTransitionCG().setDone();
       }
-      // Reset the next backtrack point with the latest state
-      int hiStateId = backtrackStateQ.peek();
+      // Reset the next backtrack point with the latest state (or the cheapest state to restore)
+      int hiStateId = restoreAwareMode ? selectCheapestBacktrackState(vm) : backtrackStateQ.peek();
       // Restore the state first if necessary
       if (vm.getStateId() != hiStateId) {
         RestorableVMState restorableState = restorableStateMap.get(hiStateId);
+        long restoreStartTime = System.nanoTime();
         vm.restoreState(restorableState);
+        restoreTime += System.nanoTime() - restoreStartTime;
+        numOfRestores++;
       }
+      lastBacktrackStateId = hiStateId;
       // Set the backtrack CG
       IntChoiceFromSet backtrackCG = (IntChoiceFromSet) vm.getChoiceGenerator();
       setBacktrackCG(hiStateId, backtrackCG);
+      // Free what the finished executions left behind
+      if (reclamationMode) {
+        reclaimUnreachableExecutions();
+      }
+      // Build the event classes after the learning executions
+      if (eventEquivalenceMode && !eventClasses.isBuilt() && executionList.size() > numOfLearningExecutions) {
+        eventClasses.buildClasses();
+        if (verboseMode) {
+          out.println("\n==> DEBUG: Event equivalence classes built: " + eventClasses + "\n");
+        }
+      }
     } else {
       // Set done this last CG (we save a few rounds)
       icsCG.setDone();
@@ -1188,40 +3764,172 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     isEndOfExecution = true;
   }
 
-  private boolean isConflictFound(int eventChoice, Execution conflictExecution, int conflictChoice,
-                                  ReadWriteSet currRWSet) {
+  private long estimateRestoreCost(int stateId, int currentDepth) {
+    // The cost grows with the snapshot size and the distance from the current state
+    int[] restoreCost = restoreCostMap.get(stateId);
+    if (restoreCost == null) {
+      return Long.MAX_VALUE;
+    }
+    return restoreCost[0] + (long) Math.abs(currentDepth - restoreCost[1]) * RESTORE_COST_PER_TRANSITION;
+  }
+
+  // Select the next state to explore based on the restore cost:
+  // 1) the state of the last backtrack point as long as it has backtrack points (batched under the same snapshot),
+  // 2) the current state (no restore is needed), or
+  // 3) the state with the lowest estimated restore cost (the priority decides between states with the same cost).
+  private int selectCheapestBacktrackState(VM vm) {
+    if (backtrackStateQ.contains(lastBacktrackStateId)) {
+      return lastBacktrackStateId;
+    }
+    int currStateId = vm.getStateId();
+    if (backtrackStateQ.contains(currStateId)) {
+      return currStateId;
+    }
+    int cheapestStateId = backtrackStateQ.peek();
+    long cheapestCost = estimateRestoreCost(cheapestStateId, choiceCounter);
+    for (int i = 1; i < backtrackStateQ.size(); i++) {
+      int stateId = backtrackStateQ.get(i);
+      long cost = estimateRestoreCost(stateId, choiceCounter);
+      if (cost < cheapestCost || (cost == cheapestCost && backtrackStatePriority.precedes(stateId, cheapestStateId))) {
+        cheapestStateId = stateId;
+        cheapestCost = cost;
+      }
+    }
+    return cheapestStateId;
+  }
+
+  // Seed the backtrack points that the first round constructed at the same position of its first execution
+  // Seeding only adds backtrack points, so it is sound: if the rounds diverge we just stop seeding
+  private void seedBacktrackPoints(int stateId) {
+    int position = choiceCounter;
+    if (position >= roundSeeds.getLength()) {
+      return;
+    }
+    if (position > 0 && !roundSeeds.isSameTransition(position - 1,
+            currentExecution.getReadWriteFieldsMap().get(position - 1))) {
+      stopSeeding("different R/W set at position " + (position - 1));
+      return;
+    }
+    if (!roundSeeds.mapState(position, stateId)) {
+      stopSeeding("state IDs diverge at position " + position);
+      return;
+    }
+    TransitionEvent currTrans = currentExecution.getExecutionTrace().get(position);
+    for (int event : roundSeeds.getEvents(position)) {
+      if (!isTraceAlreadyConstructed(event, stateId)) {
+        addNewBacktrackPoint(stateId, event, currTrans, null);
+        numOfSeededBacktrackPoints++;
+      }
+    }
+  }
+
+  private void stopSeeding(String reason) {
+    roundDivergence = reason;
+    roundSeeds = null;
+    if (verboseMode) {
+      out.println("\n==> DEBUG: Stop seeding from the first round: " + reason + "\n");
+    }
+  }
+
+  // Reclaim predecessors and executions that cannot yield new backtrack points anymore
+  // 1) redundant predecessors: their R/W information is already absorbed through an equivalent predecessor, and
+  // 2) unreachable executions: the backward DFS only reaches past executions through predecessors, so their
+  //    transitions are removed from the R-Graph and the executions become garbage (executionList keeps a null slot
+  //    per reclaimed execution since the predecessors refer to executions through their index)
+  private void reclaimUnreachableExecutions() {
+    BitSet referencedExecutions = new BitSet(executionList.size());
+    referencedExecutions.set(currentExecution.getId());
+    if (roundReuseMode) {
+      // The first execution of the round seeds the next round
+      referencedExecutions.set(firstExecution.getId());
+    }
+    for (PredecessorInfo predecessorInfo : stateToPredInfo.values()) {
+      int numOfRemovedPredecessors = predecessorInfo.removeRedundantPredecessors();
+      numOfReclaimedPredecessors += numOfRemovedPredecessors;
+      numOfReclaimedBytes += numOfRemovedPredecessors * PREDECESSOR_BYTES;
+      for (int i = 0; i < predecessorInfo.getNumOfPredecessors(); i++) {
+        referencedExecutions.set(predecessorInfo.getPredecessorExecutionId(i));
+      }
+    }
+    BitSet releasedExecutions = new BitSet(executionList.size());
+    for (int execId = 0; execId < executionList.size(); execId++) {
+      if (executionList.get(execId) != null && !referencedExecutions.get(execId)) {
+        releasedExecutions.set(execId);
+      }
+    }
+    numOfReclaimedBytes += (long) rGraph.removeTransitions(releasedExecutions) * MAP_ENTRY_BYTES;
+    for (int execId = releasedExecutions.nextSetBit(0); execId >= 0;
+         execId = releasedExecutions.nextSetBit(execId + 1)) {
+      numOfReclaimedBytes += executionList.get(execId).release();
+      numOfReclaimedExecutions++;
+      executionList.set(execId, null);
+    }
+  }
+
+  // Check for a conflict and return currRWSet without the conflicting field, or currRWSet itself if no conflict is found
+  private ReadWriteSet removeConflictingField(int eventChoice, Execution conflictExecution, int conflictChoice,
+                                              ReadWriteSet currRWSet) {
     // conflictExecution/conflictChoice represent a predecessor event/transaction that can potentially have a conflict
     ArrayList<TransitionEvent> conflictTrace = conflictExecution.getExecutionTrace();
     HashMap<Integer, ReadWriteSet> confRWFieldsMap = conflictExecution.getReadWriteFieldsMap();
     // Skip if this event does not have any Read/Write set or the two events are basically the same event (number)
     if (!confRWFieldsMap.containsKey(conflictChoice) || eventChoice == conflictTrace.get(conflictChoice).getChoice()) {
-      return false;
+      return currRWSet;
     }
     // R/W set of choice/event that may have a potential conflict
     ReadWriteSet confRWSet = confRWFieldsMap.get(conflictChoice);
     // Check for conflicts with Read and Write fields for Write instructions
-    Set<String> currWriteSet = currRWSet.getWriteSet();
-    for(String writeField : currWriteSet) {
-      int currObjId = currRWSet.writeFieldObjectId(writeField);
-      if ((confRWSet.readFieldExists(writeField) && confRWSet.readFieldObjectId(writeField) == currObjId) ||
-          (confRWSet.writeFieldExists(writeField) && confRWSet.writeFieldObjectId(writeField) == currObjId)) {
+    for(int i = 0; i < currRWSet.getNumOfWriteFields(); i++) {
+      int writeField = currRWSet.getWriteFieldId(i);
+      int currObjId = currRWSet.getWriteObjectId(i);
+      boolean isWriteWrite =
+              confRWSet.writeFieldExists(writeField) && confRWSet.writeFieldObjectId(writeField) == currObjId;
+      if (isWriteWrite ||
+          (confRWSet.readFieldExists(writeField) && confRWSet.readFieldObjectId(writeField) == currObjId)) {
+        isWriteWriteConflict = isWriteWrite;
         // Remove this from the write set as we are tracking per memory location
-        currRWSet.removeWriteField(writeField);
-        return true;
+        return currRWSet.removeWriteField(writeField);
       }
     }
     // Check for conflicts with Write fields for Read instructions
-    Set<String> currReadSet = currRWSet.getReadSet();
-    for(String readField : currReadSet) {
-      int currObjId = currRWSet.readFieldObjectId(readField);
+    for(int i = 0; i < currRWSet.getNumOfReadFields(); i++) {
+      int readField = currRWSet.getReadFieldId(i);
+      int currObjId = currRWSet.getReadObjectId(i);
       if (confRWSet.writeFieldExists(readField) && confRWSet.writeFieldObjectId(readField) == currObjId) {
+        isWriteWriteConflict = false;
         // Remove this from the read set as we are tracking per memory location
-        currRWSet.removeReadField(readField);
-        return true;
+        return currRWSet.removeReadField(readField);
       }
     }
-    // Return false if no conflict is found
-    return false;
+    // Return the same set if no conflict is found
+    return currRWSet;
+  }
+
+  // Check if an instruction cannot produce a relevant access: only field instructions on relevant fields and
+  // INVOKEINTERFACE instructions of property accesses pass (the results are cached per field and per instruction)
+  private boolean isInstructionExcluded(Instruction executedInsn) {
+    if (executedInsn instanceof JVMFieldInstruction) {
+      return isFieldExcluded(executedInsn);
+    } else if (executedInsn instanceof INVOKEINTERFACE) {
+      return isInvokeExcluded((INVOKEINTERFACE) executedInsn);
+    }
+    return true;
+  }
+
+  private boolean isInvokeExcluded(INVOKEINTERFACE insn) {
+    if (nonRelevantInvokes.contains(insn)) {
+      return true;
+    }
+    if (relevantInvokes.contains(insn)) {
+      return false;
+    }
+    // Property accesses are calls to the Groovy callsite in closures (see analyzeReadWriteAccesses())
+    if (insn.toString().startsWith(GET_PROPERTY_METHOD) && insn.getMethodInfo().getName().equals(DO_CALL_METHOD)) {
+      relevantInvokes.add(insn);
+      return false;
+    }
+    nonRelevantInvokes.add(insn);
+    return true;
   }
 
   private boolean isFieldExcluded(Instruction executedInsn) {
@@ -1268,39 +3976,60 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     return false;
   }
 
-  private HashSet<Predecessor> getPredecessors(int stateId) {
-    // Get a set of predecessors for this state ID
-    HashSet<Predecessor> predecessors;
-    if (stateToPredInfo.containsKey(stateId)) {
-      PredecessorInfo predecessorInfo = stateToPredInfo.get(stateId);
-      predecessors = predecessorInfo.getPredecessors();
-    } else {
-      predecessors = new HashSet<>();
+  private int getFieldId(FieldInfo fieldInfo) {
+    // Intern the full field name: different field info objects with the same full name share the same ID
+    Integer fieldId = fieldInfoToIdMap.get(fieldInfo);
+    if (fieldId == null) {
+      String fieldName = fieldInfo.getFullName();
+      fieldId = fieldNameToIdMap.get(fieldName);
+      if (fieldId == null) {
+        fieldId = fieldNames.size();
+        fieldNames.add(fieldName);
+        fieldNameToIdMap.put(fieldName, fieldId);
+      }
+      fieldInfoToIdMap.put(fieldInfo, fieldId);
     }
+    return fieldId;
+  }
 
-    return predecessors;
+  private HashMap<Integer, ReadWriteSet> getRecordedRWFieldsMap() {
+    // In the pipelined mode, the interpreter records into a map that is published at the next transition,
+    // so that it does not need the analysis lock
+    return pipelinedMode ? pendingRWFieldsMap : currentExecution.getReadWriteFieldsMap();
   }
 
   private ReadWriteSet getReadWriteSet(int currentChoice) {
-    // Do the analysis to get Read and Write accesses to fields
-    ReadWriteSet rwSet;
-    // We already have an entry
-    HashMap<Integer, ReadWriteSet> currReadWriteFieldsMap = currentExecution.getReadWriteFieldsMap();
-    if (currReadWriteFieldsMap.containsKey(currentChoice)) {
-      rwSet = currReadWriteFieldsMap.get(currentChoice);
-    } else { // We need to create a new entry
-      rwSet = new ReadWriteSet();
-      currReadWriteFieldsMap.put(currentChoice, rwSet);
+    // Get the R/W set of this choice in the current execution (the empty set if there is no entry yet)
+    ReadWriteSet rwSet = getRecordedRWFieldsMap().get(currentChoice);
+    return rwSet == null ? ReadWriteSet.EMPTY : rwSet;
+  }
+
+  private void recordReadField(int currentChoice, int fieldId, int objectId) {
+    ReadWriteSet rwSet = getReadWriteSet(currentChoice);
+    ReadWriteSet newRWSet = rwSet.addReadField(fieldId, objectId);
+    // The set only changes if this is a new field or a new object ID for the field
+    if (newRWSet != rwSet) {
+      getRecordedRWFieldsMap().put(currentChoice, newRWSet);
+    }
+  }
+
+  private void recordWriteField(int currentChoice, int fieldId, int objectId) {
+    ReadWriteSet rwSet = getReadWriteSet(currentChoice);
+    ReadWriteSet newRWSet = rwSet.addWriteField(fieldId, objectId);
+    // The set only changes if this is a new field or a new object ID for the field
+    if (newRWSet != rwSet) {
+      getRecordedRWFieldsMap().put(currentChoice, newRWSet);
     }
-    return rwSet;
   }
 
   // Reset data structure for each new execution
   private void resetStatesForNewExecution(IntChoiceFromSet icsCG, VM vm) {
-    if (choices == null || choices != icsCG.getAllChoices()) {
+    // Each execution has its own array of choices shared by all its CGs
+    DporIntChoiceGenerator dporChoices = icsCG.getDporChoices();
+    if (choices == null || choices != dporChoices.getValues()) {
       // Reset state variables
       choiceCounter = 0;
-      choices = icsCG.getAllChoices();
+      choices = dporChoices.getValues();
       refChoices = copyChoices(choices);
       // Clear data structures
       currVisitedStates.clear();
@@ -1314,7 +4043,10 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     // Set a backtrack CG based on a state ID
     LinkedList<BacktrackExecution> backtrackExecutions = backtrackMap.get(stateId);
     BacktrackExecution backtrackExecution = backtrackExecutions.removeLast();
-    backtrackCG.setNewValues(backtrackExecution.getChoiceList());  // Get the last from the queue
+    backtrackCG.setDporChoices(backtrackExecution.getChoiceList());  // Get the last from the queue
+    if (wakeupTreeEngine != null) {
+      wakeupTreeEngine.startExecution(stateId, backtrackExecution);
+    }
     backtrackCG.setStateId(stateId);
     backtrackCG.reset();
     // Update current execution with this new execution
@@ -1324,10 +4056,17 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
     // Try to free some memory since this map is only used for the current execution
     currentExecution.clearCGToChoiceMap();
     currentExecution = newExecution;
+    if (traceRecorder != null) {
+      traceRecorder.recordBacktrackPoint(false, stateId, backtrackExecution.getFirstChoice());
+      traceRecorder.recordExecutionStarted(newExecution.getId(), executionList.size());
+    }
     // Remove from the queue if we don't have more backtrack points for that state
+    boolean isPriorityChanged = backtrackStatePriority.recordExploredState(stateId);
     if (backtrackExecutions.isEmpty()) {
       backtrackMap.remove(stateId);
       backtrackStateQ.remove(stateId);
+    } else if (isPriorityChanged) {
+      backtrackStateQ.update(stateId);
     }
   }
 
@@ -1335,23 +4074,23 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   // 1) recursively, and
   // 2) track accesses per memory location (per shared variable/field)
   private void updateBacktrackSet(Execution execution, int currentChoice) {
-    // Copy ReadWriteSet object
+    // Get the ReadWriteSet object (no copy is needed since it is immutable)
     HashMap<Integer, ReadWriteSet> currRWFieldsMap = execution.getReadWriteFieldsMap();
     ReadWriteSet currRWSet = currRWFieldsMap.get(currentChoice);
     if (currRWSet == null) {
       return;
     }
-    currRWSet = currRWSet.getCopy();
     // Memorize visited TransitionEvent object while performing backward DFS to avoid getting caught up in a cycle
     HashSet<TransitionEvent> visited = new HashSet<>();
     // Conflict TransitionEvent is essentially the current TransitionEvent
     TransitionEvent confTrans = execution.getExecutionTrace().get(currentChoice);
     // Update backtrack set recursively
-    updateBacktrackSetDFS(execution, currentChoice, confTrans.getChoice(), currRWSet, visited);
+    updateBacktrackSetDFS(execution, currentChoice, confTrans.getChoice(), currRWSet, visited, 0);
   }
 
+  // The conflict depth is the index of the transition of the conflict event on the DFS path (wakeup-tree engine)
   private void updateBacktrackSetDFS(Execution execution, int currentChoice, int conflictEventChoice,
-                                     ReadWriteSet currRWSet, HashSet<TransitionEvent> visited) {
+                                     ReadWriteSet currRWSet, HashSet<TransitionEvent> visited, int conflictDepth) {
     TransitionEvent currTrans = execution.getExecutionTrace().get(currentChoice);
     // Record this transition into the state summary of main summary
     currRWSet = mainSummary.updateStateSummary(currTrans.getStateId(), conflictEventChoice, currRWSet);
@@ -1360,27 +4099,44 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
       return;
     }
     visited.add(currTrans);
+    if (wakeupTreeEngine != null) {
+      wakeupTreeEngine.pushTransition(currTrans.getChoice(), execution.getReadWriteFieldsMap().get(currentChoice));
+    }
     // Check the predecessors only if the set is not empty
-    if (!currRWSet.isEmpty()) {
-      // Explore all predecessors
-      for (Predecessor predecessor : getPredecessors(currTrans.getStateId())) {
+    PredecessorInfo predecessorInfo = stateToPredInfo.get(currTrans.getStateId());
+    if (!currRWSet.isEmpty() && predecessorInfo != null) {
+      // Explore all predecessors (indexed iteration does not allocate an iterator)
+      for (int i = 0; i < predecessorInfo.getNumOfPredecessors(); i++) {
         // Get the predecessor (previous conflict choice)
-        int predecessorChoice = predecessor.getChoice();
-        Execution predecessorExecution = predecessor.getExecution();
+        int predecessorChoice = predecessorInfo.getPredecessorChoice(i);
+        // Skip predecessors recorded after the transition handed over to the pipelined analysis
+        int predecessorExecutionId = predecessorInfo.getPredecessorExecutionId(i);
+        if (predecessorExecutionId > snapshotExecutionId ||
+                (predecessorExecutionId == snapshotExecutionId && predecessorChoice > snapshotChoice)) {
+          continue;
+        }
+        Execution predecessorExecution = predecessorInfo.getPredecessorExecution(i);
         // Push up one happens-before transition
         int newConflictEventChoice = conflictEventChoice;
-        // Check if a conflict is found
-        ReadWriteSet newCurrRWSet = currRWSet.getCopy();
-        if (isConflictFound(conflictEventChoice, predecessorExecution, predecessorChoice, newCurrRWSet)) {
-          createBacktrackingPoint(conflictEventChoice, predecessorExecution, predecessorChoice);
+        int newConflictDepth = conflictDepth;
+        // Check if a conflict is found (the conflicting field is removed from the new set)
+        ReadWriteSet newCurrRWSet =
+                removeConflictingField(conflictEventChoice, predecessorExecution, predecessorChoice, currRWSet);
+        if (newCurrRWSet != currRWSet) {
+          createBacktrackingPoint(conflictEventChoice, predecessorExecution, predecessorChoice, conflictDepth);
           // We need to extract the pushed happens-before event choice from the predecessor execution and choice
           newConflictEventChoice = predecessorExecution.getExecutionTrace().get(predecessorChoice).getChoice();
+          // The predecessor is the next transition on the DFS path
+          newConflictDepth = wakeupTreeEngine != null ? wakeupTreeEngine.getPathSize() : 0;
         }
         // Continue performing DFS if conflict is not found
         updateBacktrackSetDFS(predecessorExecution, predecessorChoice, newConflictEventChoice,
-                newCurrRWSet, visited);
+                newCurrRWSet, visited, newConflictDepth);
       }
     }
+    if (wakeupTreeEngine != null) {
+      wakeupTreeEngine.popTransition();
+    }
   }
 
   // --- Functions related to the reachability analysis when there is a state match
@@ -1402,22 +4158,37 @@ public class DPORStateReducerWithSummary extends ListenerAdapter {
   // Update the backtrack sets from previous executions
   private void updateBacktrackSetsFromGraph(int stateId, Execution currExecution, int currChoice) {
     // Get events/choices at this state ID
-    Set<Integer> eventChoicesAtStateId = mainSummary.getEventChoicesAtStateId(stateId);
-    for (Integer eventChoice : eventChoicesAtStateId) {
+    // Walk over a snapshot of the events in ascending order: events added by the DFS below are not visited
+    StateSummary stateSummary = mainSummary.getStateSummary(stateId);
+    int snapshot = stateSummary.getSnapshot();
+    for (int eventChoice = 0; eventChoice < stateSummary.getNumOfEventSlots(); eventChoice++) {
+      if (!stateSummary.isInSnapshot(eventChoice, snapshot)) {
+        continue;
+      }
       // Get the ReadWriteSet object for this event at state ID
-      ReadWriteSet rwSet = mainSummary.getRWSetForEventChoiceAtState(eventChoice, stateId).getCopy();
+      ReadWriteSet summaryRWSet = stateSummary.getRWSet(eventChoice);
       // We have to first check for conflicts between the event and the current transition
       // Push up one happens-before transition
       int conflictEventChoice = eventChoice;
-      if (isConflictFound(eventChoice, currExecution, currChoice, rwSet)) {
-        createBacktrackingPoint(eventChoice, currExecution, currChoice);
+      int conflictDepth = 0;
+      // The summary event is the later event of the races on the DFS path of the wakeup-tree engine
+      if (wakeupTreeEngine != null) {
+        wakeupTreeEngine.pushTransition(eventChoice, summaryRWSet);
+      }
+      ReadWriteSet rwSet = removeConflictingField(eventChoice, currExecution, currChoice, summaryRWSet);
+      if (rwSet != summaryRWSet) {
+        createBacktrackingPoint(eventChoice, currExecution, currChoice, conflictDepth);
         // We need to extract the pushed happens-before event choice from the predecessor execution and choice
         conflictEventChoice = currExecution.getExecutionTrace().get(currChoice).getChoice();
+        conflictDepth = 1;
       }
       // Memorize visited TransitionEvent object while performing backward DFS to avoid getting caught up in a cycle
       HashSet<TransitionEvent> visited = new HashSet<>();
       // Update the backtrack sets recursively
-      updateBacktrackSetDFS(currExecution, currChoice, conflictEventChoice, rwSet, visited);
+      updateBacktrackSetDFS(currExecution, currChoice, conflictEventChoice, rwSet, visited, conflictDepth);
+      if (wakeupTreeEngine != null) {
+        wakeupTreeEngine.popTransition();
+      }
     }
   }
 }
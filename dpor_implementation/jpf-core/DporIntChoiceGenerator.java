@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm.choice;
+
+import gov.nasa.jpf.JPFException;
+
+/**
+ * int-array choice generator for the DPOR event loop
+ *
+ * The event CG of the event loop is created by Verify.getIntFromList() as an IntChoiceFromSet, so the DPOR
+ * listener attaches an instance of this class to it (see NumberChoiceFromList.setDporChoices()). Once attached,
+ * the CG takes its choices from here without boxing, and choices are:
+ * - circular: advance() wraps around at the end of the values and only the done flag ends the CG,
+ * - rotated: startAt(k) makes the first choice the k-th value, and the rest follows in circular order, and
+ * - reorderable in place: setChoice() and moveToFront() modify the values without allocating a new array.
+ *
+ * The values array is shared by all the CGs of one DPOR execution, and its identity marks the execution.
+ */
+public class DporIntChoiceGenerator {
+
+  protected int[] values;
+  protected int start = 0;    // Rotation offset: the index of the first choice
+  protected int count = -1;
+  protected boolean isDone = false;
+
+  public DporIntChoiceGenerator(int[] vals) {
+    values = vals;
+  }
+
+  public void advance() {
+    if (count < values.length - 1) count++;
+    else count = 0;
+  }
+
+  public int getChoice(int idx) {
+    if (idx >= 0 && idx < values.length) {
+      return values[(start + idx) % values.length];
+    } else {
+      throw new IllegalArgumentException("choice index out of range: " + idx);
+    }
+  }
+
+  /**
+   * @return the current choice, or 0 if the generator has not been advanced yet
+   */
+  public int getNextChoice() {
+    if ((count >= 0) && (count < values.length)) {
+      return values[(start + count) % values.length];
+    }
+    return 0;
+  }
+
+  /**
+   * @return the index of the current choice in the values array (rotation included), or -1 before advance()
+   */
+  public int getNextChoiceIndex() {
+    if (count < 0) {
+      return -1;
+    }
+    return (start + count) % values.length;
+  }
+
+  public int getProcessedNumberOfChoices() {
+    return count + 1;
+  }
+
+  public int getTotalNumberOfChoices() {
+    return values.length;
+  }
+
+  public int[] getValues() {
+    return values;
+  }
+
+  public boolean hasMoreChoices() {
+    return !isDone;
+  }
+
+  public boolean isDone() {
+    return isDone;
+  }
+
+  /**
+   * move the given value to the front and shift the values before it by one (the rest keeps its order)
+   */
+  public void moveToFront(int value) {
+    int idx = 0;
+    while (idx < values.length && values[idx] != value) {
+      idx++;
+    }
+    if (idx == values.length) {
+      throw new JPFException("value " + value + " is not a choice");
+    }
+    System.arraycopy(values, 0, values, 1, idx);
+    values[0] = value;
+  }
+
+  public void reset() {
+    count = -1;
+    isDone = false;
+  }
+
+  /**
+   * set the value at the given index in the values array (rotation not included)
+   */
+  public void setChoice(int idx, int value) {
+    if ((idx >= 0) && (idx < values.length)) {
+      values[idx] = value;
+    } else {
+      throw new JPFException("illegal value " + idx + " for array index");
+    }
+  }
+
+  public void setDone() {
+    isDone = true;
+  }
+
+  /**
+   * start the choices at the k-th value (modulo the number of values)
+   */
+  public void startAt(int k) {
+    start = k % values.length;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(getClass().getName());
+    sb.append("[start=");
+    sb.append(start);
+    sb.append(",isDone:");
+    sb.append(isDone);
+    sb.append(',');
+    int idx = getNextChoiceIndex();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      if (i == idx) {
+        sb.append('>');
+      }
+      sb.append(values[i]);
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+}
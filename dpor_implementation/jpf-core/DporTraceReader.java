@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.listener;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * streaming reader for the binary exploration trace of DPORStateReducerWithSummary (option exploration_trace)
+ *
+ * The trace starts with the 8-byte header "DPORTRC" + version, followed by records. Each record is a type byte and
+ * its arguments, all zigzag varints:
+ * - STATE_ADVANCED: state ID, depth, flags (1 = new, 2 = end)
+ * - STATE_BACKTRACKED: state ID, depth
+ * - TRANSITION: state ID, event choice, choice counter
+ * - RW_SET: choice counter, number of reads, (field ID, object ID) per read, number of writes, same per write
+ * - FIELD_NAME: field ID, name length, UTF-8 name bytes (written before the first R/W set that uses the field ID)
+ * - BACKTRACK_CREATED: state ID, event choice
+ * - BACKTRACK_CONSUMED: state ID, event choice
+ * - EXECUTION_STARTED: execution ID, number of executions in the list (the list is kept across the boolean CG rounds,
+ *   so the IDs are unique in the whole trace)
+ *
+ * The reader iterates the trace with next() without loading it whole; the arguments of the current record are
+ * returned by getArg() (field names are collected as they are read and returned by getFieldName()), e.g.,
+ *
+ *   try (DporTraceReader reader = new DporTraceReader("exploration.trace")) {
+ *     while (reader.next()) {
+ *       if (reader.getType() == DporTraceReader.TRANSITION) { ... reader.getArg(1) ... }
+ *     }
+ *   }
+ */
+public class DporTraceReader implements Closeable {
+
+  public static final byte[] MAGIC = {'D', 'P', 'O', 'R', 'T', 'R', 'C', 1};
+
+  public static final int STATE_ADVANCED = 1;
+  public static final int STATE_BACKTRACKED = 2;
+  public static final int TRANSITION = 3;
+  public static final int RW_SET = 4;
+  public static final int FIELD_NAME = 5;
+  public static final int BACKTRACK_CREATED = 6;
+  public static final int BACKTRACK_CONSUMED = 7;
+  public static final int EXECUTION_STARTED = 8;
+
+  public static final int FLAG_NEW = 1;
+  public static final int FLAG_END = 2;
+
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final ArrayList<String> fieldNames;
+  private int type;
+  private int[] args;
+  private int numOfArgs;
+  private long numOfRecords;
+
+  public DporTraceReader(String traceFile) throws IOException {
+    channel = FileChannel.open(Paths.get(traceFile), StandardOpenOption.READ);
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    buffer.flip();
+    fieldNames = new ArrayList<>();
+    args = new int[16];
+    for (byte b : MAGIC) {
+      if (!hasMoreBytes() || buffer.get() != b) {
+        channel.close();
+        throw new IOException("not an exploration trace: " + traceFile);
+      }
+    }
+  }
+
+  /**
+   * read the next record
+   * @return false at the end of the trace
+   */
+  public boolean next() throws IOException {
+    if (!hasMoreBytes()) {
+      return false;
+    }
+    type = buffer.get();
+    numOfArgs = 0;
+    switch (type) {
+      case STATE_ADVANCED:
+      case TRANSITION:
+        readArgs(3);
+        break;
+      case STATE_BACKTRACKED:
+      case BACKTRACK_CREATED:
+      case BACKTRACK_CONSUMED:
+      case EXECUTION_STARTED:
+        readArgs(2);
+        break;
+      case RW_SET:
+        readArgs(2);
+        readArgs(2 * args[1]);
+        readArgs(1);
+        readArgs(2 * args[numOfArgs - 1]);
+        break;
+      case FIELD_NAME:
+        readArgs(2);
+        byte[] name = new byte[args[1]];
+        for (int i = 0; i < name.length; i++) {
+          name[i] = readByte();
+        }
+        while (fieldNames.size() <= args[0]) {
+          fieldNames.add(null);
+        }
+        fieldNames.set(args[0], new String(name, StandardCharsets.UTF_8));
+        break;
+      default:
+        throw new IOException("unknown record type " + type + " after record " + numOfRecords);
+    }
+    numOfRecords++;
+    return true;
+  }
+
+  public int getType() {
+    return type;
+  }
+
+  public int getNumOfArgs() {
+    return numOfArgs;
+  }
+
+  public int getArg(int idx) {
+    if (idx >= 0 && idx < numOfArgs) {
+      return args[idx];
+    } else {
+      throw new IllegalArgumentException("argument index out of range: " + idx);
+    }
+  }
+
+  /**
+   * @return the reads of the current RW_SET record as (field ID, object ID) pairs
+   */
+  public int getNumOfReads() {
+    return args[1];
+  }
+
+  public int getReadFieldId(int idx) {
+    return args[2 + 2 * idx];
+  }
+
+  public int getReadObjectId(int idx) {
+    return args[3 + 2 * idx];
+  }
+
+  /**
+   * @return the writes of the current RW_SET record as (field ID, object ID) pairs
+   */
+  public int getNumOfWrites() {
+    return args[2 + 2 * args[1]];
+  }
+
+  public int getWriteFieldId(int idx) {
+    return args[3 + 2 * args[1] + 2 * idx];
+  }
+
+  public int getWriteObjectId(int idx) {
+    return args[4 + 2 * args[1] + 2 * idx];
+  }
+
+  /**
+   * @return the name of a field ID read so far, or null if its FIELD_NAME record has not been read yet
+   */
+  public String getFieldName(int fieldId) {
+    return fieldId < fieldNames.size() ? fieldNames.get(fieldId) : null;
+  }
+
+  public long getNumOfRecords() {
+    return numOfRecords;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void readArgs(int count) throws IOException {
+    if (numOfArgs + count > args.length) {
+      int[] newArgs = new int[Math.max(args.length * 2, numOfArgs + count)];
+      System.arraycopy(args, 0, newArgs, 0, numOfArgs);
+      args = newArgs;
+    }
+    for (int i = 0; i < count; i++) {
+      args[numOfArgs++] = readVarInt();
+    }
+  }
+
+  private int readVarInt() throws IOException {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = readByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0 && shift < 35);
+    // Zigzag decoding
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private byte readByte() throws IOException {
+    if (!hasMoreBytes()) {
+      throw new EOFException("truncated record after record " + numOfRecords);
+    }
+    return buffer.get();
+  }
+
+  private boolean hasMoreBytes() throws IOException {
+    while (!buffer.hasRemaining()) {
+      buffer.clear();
+      int numOfBytes = channel.read(buffer);
+      buffer.flip();
+      if (numOfBytes < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -38,6 +38,10 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
   // TODO: Fix for Groovy's model-checking
   // TODO: This is a setter to change the values of the ChoiceGenerator to implement POR
   protected boolean isDpor = false;
+
+  // TODO: Fix for Groovy's model-checking
+  // TODO: The DPOR event loop attaches an int-array choice generator that takes over the choices of this CG
+  protected DporIntChoiceGenerator dporChoices = null;
   
   /**
    *  super constructor for subclasses that want to configure themselves
@@ -83,6 +87,9 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
   
   @Override
   public T getChoice (int idx){
+    if (dporChoices != null) {
+      return newValue(dporChoices.getChoice(idx), 1);
+    }
     if (idx >=0 && idx < values.length){
       return values[idx];
     } else {
@@ -95,6 +102,9 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
     count = -1;
 
     isDone = false;
+    if (dporChoices != null) {
+      dporChoices.reset();
+    }
   }
       
   /** 
@@ -103,6 +113,9 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
   @Override
   public T getNextChoice() {
 
+    if (dporChoices != null) {
+      return newValue(dporChoices.getNextChoice(), 1);
+    }
     if ((count >= 0) && (count < values.length)) {
       return values[count];
     }
@@ -117,6 +130,9 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
   public boolean hasMoreChoices() {
     // TODO: Fix for Groovy's model-checking
     // TODO: This is a setter to change the values of the ChoiceGenerator to implement POR
+    if (dporChoices != null) {
+      return dporChoices.hasMoreChoices();
+    }
     if (isDpor) {
       if (!isDone)
         return true;
@@ -140,7 +156,10 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
     // TODO: This is a setter to change the values of the ChoiceGenerator to implement POR
 
     // TODO: We make this circular
-    if (isDpor) {
+    if (dporChoices != null) {
+      dporChoices.advance();
+      count = dporChoices.getProcessedNumberOfChoices() - 1;
+    } else if (isDpor) {
       if (count < values.length - 1) count++;
       else count = 0;
     } else {
@@ -153,11 +172,17 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
    * get String label of current value, as specified in config file
    **/
   public String getValueLabel(){
+    if (dporChoices != null) {
+      return Integer.toString(dporChoices.getNextChoice());
+    }
     return values[count].toString();
   }
 
   @Override
   public int getTotalNumberOfChoices () {
+    if (dporChoices != null) {
+      return dporChoices.getTotalNumberOfChoices();
+    }
     return values.length;
   }
 
@@ -281,4 +306,31 @@ public abstract class NumberChoiceFromList<T extends Number> extends ChoiceGener
   public void setDpor() {
     isDpor = true;
   }
+
+  // TODO: Fix for Groovy's model-checking
+  // TODO: Attach the int-array choice generator of the DPOR event loop (null detaches it)
+  public void setDporChoices(DporIntChoiceGenerator dChoices) {
+    dporChoices = dChoices;
+    count = -1;
+  }
+
+  public DporIntChoiceGenerator getDporChoices() {
+    return dporChoices;
+  }
+
+  @Override
+  public boolean isDone() {
+    if (dporChoices != null) {
+      return dporChoices.isDone();
+    }
+    return isDone;
+  }
+
+  @Override
+  public void setDone() {
+    isDone = true;
+    if (dporChoices != null) {
+      dporChoices.setDone();
+    }
+  }
 }
@@ -0,0 +1,4 @@
+#!/bin/bash
+# Minimize the choice path of a conflict (recorded with conflict_choices) with parallel replays
+# Usage: ./minimize.sh <number of workers> <choice path file> <JPF configuration, e.g., main.jpf>
+java -Xmx4g -XX:-UseCompressedOops -classpath build/jpf.jar gov.nasa.jpf.listener.ConflictMinimizer $1 $2 +classpath=examples:lib/groovy-dateutil-2.5.7:lib/groovy-2.5.7:lib/groovy-json-2.5.7:../smartthings-infrastructure/bin/main/ $3
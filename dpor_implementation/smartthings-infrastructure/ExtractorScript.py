@@ -1,8 +1,11 @@
 import os
+import re
 readyToReturn = 0
 ToReturn = ""
 eventList = []
 eventAppList = [] # This list maps App1 or App2 to a specific event
+eventNumberAppList = [] # This list maps App1 or App2 to a specific event number (case in eventSimulator.groovy)
+eventNumberTypeList = [] # This list maps an event type to a specific event number, e.g., lock or schedule:method
 eventVarMap = {}
 eventVarCounterMap = {}
 capabilityMap = {}
@@ -351,6 +354,20 @@ def CountEvents():
 		numOfActualEvents = numOfActualEvents + eventTypeCounterMap[event]
 	return numOfActualEvents
 
+def WriteCase(extractedEvents, counter, appName, eventType):
+	global eventNumberAppList
+	global eventNumberTypeList
+	extractedEvents.write("\t\tcase %d:\n" % counter)
+	eventNumberAppList.append(appName)
+	eventNumberTypeList.append(eventType)
+
+def WriteEventAppMap():
+	# Write the app of each event number (one per line) for the exploration policies of the DPOR listener
+	eventAppMap = open("eventSimulator/eventAppMap", "w+")
+	for appName in eventNumberAppList:
+		eventAppMap.write("%s\n" % appName)
+	eventAppMap.close()
+
 def ExtractEvents(extractedEvents):
 	global eventList
 	global eventAppList
@@ -407,7 +424,7 @@ def ExtractEvents(extractedEvents):
 			if indexApp1 < indexApp2Start:
 				isApp1 = True
 		#print "DEBUG: i: %d" % i
-		extractedEvents.write("\t\tcase %d:\n" % counter)
+		WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 		if eventList[i] == "schedule":
 			variable = eventVarMap[eventList[i]]
 			if eventList[i] not in eventVarCounterMap.keys():
@@ -417,6 +434,7 @@ def ExtractEvents(extractedEvents):
 				eventVarCount = eventVarCounterMap[eventList[i]]
 				eventVarCounterMap[eventList[i]] = eventVarCount + 1
 			currentMethod = variable[eventVarCount]
+			eventNumberTypeList[-1] = "schedule:" + currentMethod
 			extractedEvents.write("\t\t\t// Scheduled method in installed() or intialize()\n")
 			extractedEvents.write("\t\t\t%s.%s()" % (eventAppList[i].lower(), currentMethod))
 		elif eventList[i] == "lock":
@@ -427,7 +445,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/lockUnlockedEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -472,7 +490,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			if capability == "capability.button":
 				event = open("eventSimulator/buttonPushedEvent.groovy", "r")
 			elif capability == "device.aeonKeyFob":
@@ -498,7 +516,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/waterWetEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -533,7 +551,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			if capability == "capability.presenceSensor":
 				event = open("eventSimulator/presenceLeftEvent.groovy", "r")
 			elif capability == "capability.beacon":
@@ -559,7 +577,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/doorClosedEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -582,7 +600,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/motionInactiveEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -605,14 +623,14 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/smokeDetectedEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/smokeTestedEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -652,7 +670,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			if capability == "capability.smokeDetector":
 				event = open("eventSimulator/smokeCarbonMonoxideDetectedEvent.groovy", "r")
 			elif capability == "capability.carbonMonoxideDetector":
@@ -662,7 +680,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			if capability == "capability.smokeDetector":
 				event = open("eventSimulator/smokeCarbonMonoxideTestedEvent.groovy", "r")
 			elif capability == "capability.carbonMonoxideDetector":
@@ -749,28 +767,28 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatCoolModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatEmergencyHeatModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatHeatModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatOffModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -808,28 +826,28 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatFanCirculateFanModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatCirculateFanModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatFanOnFanModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatOnFanModeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -867,28 +885,28 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatOperatingStateCoolEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatOperatingStateOffEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatOperatingStateEmergencyHeatEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/thermostatOperatingStateHeatEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -919,7 +937,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			if capability == "capability.switch":
 				event = open("eventSimulator/switchOffEvent.groovy", "r")
 			elif capability == "capability.switchLevel":
@@ -987,14 +1005,14 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/locationAwayEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/locationNightEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1042,7 +1060,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/accelerationInactiveEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1065,7 +1083,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/sleepNotSleepingEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1088,7 +1106,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/stepGoalLowEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1101,7 +1119,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/stepStepsLowEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1139,7 +1157,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/powerMeterLowPowerEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1151,7 +1169,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/illuminanceMeasurementHighEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1163,7 +1181,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/humidityLowMeasurementEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1176,21 +1194,21 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/alarmSirenEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/alarmStrobeEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/alarmOffEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1235,7 +1253,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			if capability == "capability.contactSensor":
 				event = open("eventSimulator/contactDefaultOpenEvent.groovy", "r")
 			elif capability == "capability.valve":
@@ -1284,14 +1302,14 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/musicPlayerStoppedEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/musicPlayerPausedEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1350,7 +1368,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			event = open("eventSimulator/musicPlayerMutedEvent.groovy", "r")
 			for line in event:
 				extractedEvents.write(line)
@@ -1385,7 +1403,7 @@ def ExtractEvents(extractedEvents):
 			event.close()
 			extractedEvents.write("\n\t\t\tbreak\n")
 			counter = counter + 1
-			extractedEvents.write("\t\tcase %d:\n" % counter)
+			WriteCase(extractedEvents, counter, eventAppList[i], eventList[i])
 			if capability == "capability.thermostat":
 				event = open("eventSimulator/temperatureLowEvent.groovy", "r")
 			elif capability == "capability.temperatureMeasurement":
@@ -1486,6 +1504,279 @@ def ExtractEvents(extractedEvents):
 	extractedEvents.write("\tprintln(\"\\nEVENT NUMBER: \" + eventNumber)\n");
 	extractedEvents.write("}\n")
 	
+# Static R/W footprint pre-analysis
+# We compute a conservative footprint for each event number (case in eventSimulator.groovy) and for each app.
+# The keys are app state variables (App1.state.x), settings (App1.settings.x), device capability groups
+# (device.light) and location; * means unknown (it is dependent on everything).
+# An event number writes the device (or location) of its event and runs the handlers subscribed to it in both apps.
+# A handler footprint includes the footprints of all the methods it may call (name-based call graph).
+# Whatever the parser cannot resolve makes the footprint *: a method definition it cannot extract (the app is *),
+# a call to a method that is neither defined in the app nor a known platform method, and a device command on a
+# receiver that is neither a device input nor an alias of one (a local variable, a loop variable, or a closure
+# parameter bound to a device input), and a use of state/atomicState other than state.<name> (state[...], an alias).
+locationEventTypes = ['location', 'mode', 'position', 'sunset', 'sunsetTime', 'sunrise', 'sunriseTime']
+deviceReadMethods = ['currentValue', 'currentState', 'latestValue', 'latestState', 'events', 'eventsSince',
+					 'eventsBetween', 'statesSince', 'statesBetween', 'hasCapability', 'hasCommand', 'hasAttribute',
+					 'getDisplayName', 'displayName', 'getId', 'getName', 'getLabel', 'getDeviceNetworkId',
+					 'getSupportedAttributes', 'getSupportedCommands', 'each', 'eachWithIndex', 'collect', 'find',
+					 'findAll', 'any', 'every', 'size', 'count', 'sort', 'first', 'last', 'contains', 'toString']
+deviceCommands = ['on', 'off', 'setLevel', 'setColor', 'setHue', 'setSaturation', 'setColorTemperature', 'lock',
+				  'unlock', 'open', 'close', 'push', 'both', 'strobe', 'siren', 'setHeatingSetpoint',
+				  'setCoolingSetpoint', 'setThermostatMode', 'setThermostatFanMode', 'heat', 'cool', 'auto',
+				  'emergencyHeat', 'fanOn', 'fanAuto', 'fanCirculate', 'play', 'pause', 'stop', 'nextTrack',
+				  'previousTrack', 'mute', 'unmute', 'setVolume', 'playText', 'playTrack', 'refresh', 'poll', 'take',
+				  'beep', 'arrived', 'departed', 'away', 'present', 'setTimeRemaining', 'start']
+# Bare calls that do not touch the app state, the settings, the devices, or the location
+# (setLocationMode and sendLocationEvent are analyzed as location writes, sendEvent makes the footprint *)
+knownCalls = ['if', 'for', 'while', 'switch', 'catch', 'synchronized', 'return', 'runIn', 'runOnce', 'schedule',
+			  'unschedule', 'subscribe', 'unsubscribe', 'sendPush', 'sendPushMessage', 'sendSms', 'sendSmsMessage',
+			  'sendNotification', 'sendNotificationEvent', 'sendNotificationToContacts', 'now', 'timeToday',
+			  'timeTodayAfter', 'timeOfDayIsBetween', 'toDateTime', 'getSunriseAndSunset', 'println', 'pause',
+			  'httpGet', 'httpPost', 'httpPostJson', 'httpPut', 'httpDelete', 'setLocationMode', 'sendLocationEvent',
+			  'sendEvent', 'evaluate', 'definition', 'preferences', 'section', 'input', 'page', 'dynamicPage', 'href',
+			  'label', 'mode', 'paragraph', 'icon', 'Math', 'String', 'Integer', 'Double', 'Float', 'Long', 'Boolean',
+			  'Date', 'List', 'Map']
+notMethodNames = ['if', 'for', 'while', 'switch', 'catch', 'synchronized', 'return', 'new', 'else']
+
+def GetCapabilityGroup(capability):
+	# Capabilities that change the same physical attributes share a group
+	if capability in ['capability.switch', 'capability.switchLevel', 'capability.colorControl',
+					  'capability.colorTemperature']:
+		return "device.light"
+	if capability.startswith("capability.thermostat"):
+		return "device.thermostat"
+	if capability in ['capability.actuator', 'capability.sensor']:
+		# Generic capabilities can be any device
+		return "*"
+	return "device." + capability.replace("capability.", "")
+
+def ExtractMethods(appText):
+	# Map method names to their bodies (matching braces): a definition is any list of modifiers and a return type
+	# (def, void, private, boolean, String, List<String>, ...) followed by the name and the parameters
+	# Return None if a top-level block cannot be attributed to a method or to a known SmartApp block
+	methods = {}
+	for match in re.finditer(r'(?:^|[;}\n])[ \t]*((?:[\w<>\[\],]+[ \t]+)+)(\w+)\s*\([^)]*\)\s*\{', appText):
+		modifiers = match.group(1).split()
+		if match.group(2) in notMethodNames or any(word in notMethodNames for word in modifiers):
+			continue
+		depth = 1
+		index = match.end()
+		while index < len(appText) and depth > 0:
+			if appText[index] == '{':
+				depth = depth + 1
+			elif appText[index] == '}':
+				depth = depth - 1
+			index = index + 1
+		methods[match.group(2)] = appText[match.end():index - 1]
+	# Every block at the top level has to be a method body or a known block, e.g., definition(...) or preferences
+	depth = 0
+	index = 0
+	for match in re.finditer(r'[{}]', appText):
+		if match.group(0) == '}':
+			depth = max(depth - 1, 0)
+			continue
+		if depth == 0:
+			header = appText[index:match.start()].strip()
+			nameMatch = re.search(r'(\w+)\s*(?:\([^)]*\))?\s*$', header)
+			if nameMatch is None or (nameMatch.group(1) not in methods and nameMatch.group(1) not in knownCalls and
+									 nameMatch.group(1) not in ['metadata', 'mappings', 'simulator', 'tiles']):
+				return None
+		depth = depth + 1
+		index = match.end()
+	return methods
+
+def ExtractDeviceAliases(body, inputs):
+	# Return the local variables, loop variables, and closure parameters bound to device inputs (transitively)
+	devices = set(variable for variable, inputType in inputs.items() if inputType.startswith("capability."))
+	aliases = set()
+	isChanged = True
+	while isChanged:
+		isChanged = False
+		known = devices | aliases
+		for match in re.finditer(r'(?:\bdef|\bfor\s*\(\s*(?:def\s+)?)\s*(\w+)\s*(?:=(?!=)|\bin\b|:)\s*([^;\n)]*)', body):
+			if match.group(1) not in aliases and any(re.search(r'\b' + name + r'\b', match.group(2)) for name in known):
+				aliases.add(match.group(1))
+				isChanged = True
+		for match in re.finditer(r'\b(\w+)\s*(?:\?\.|\*\.|\.)\s*\w+\s*(?:\([^)]*\))?\s*\{\s*(\w+)\s*(?:,\s*\w+\s*)?->', body):
+			if match.group(1) in known and match.group(2) not in aliases:
+				aliases.add(match.group(2))
+				isChanged = True
+	return aliases
+
+def ExtractSubscriptions(appText):
+	# Return (variable, attribute, handler) for every subscription
+	subscriptions = []
+	for match in re.finditer(r'subscribe\s*\(\s*(\w+)\s*,\s*"([^"]*)"\s*,\s*(\w+)\s*\)', appText):
+		subscriptions.append((match.group(1), match.group(2), match.group(3)))
+	for match in re.finditer(r'subscribe\s*\(\s*(\w+)\s*,\s*(\w+)\s*\)', appText):
+		subscriptions.append((match.group(1), match.group(1), match.group(2)))
+	return subscriptions
+
+def ExtractInputs(appText):
+	# Map input variables to their types, e.g., capability.switch or number
+	inputs = {}
+	for match in re.finditer(r'input\s*\(?\s*"(\w+)"\s*,\s*"([^"]+)"', appText):
+		inputs[match.group(1)] = match.group(2)
+	return inputs
+
+def AnalyzeMethodBody(body, appName, inputs, methodNames):
+	# Return the (read set, write set) of a method body without its callees
+	reads = set()
+	writes = set()
+	if re.search(r'"\$[^"]*"\s*\(|\."\$|evaluate\s*\(|sendEvent\s*\(', body):
+		# Dynamic method calls and events sent by the app are unknown
+		writes.add("*")
+		return (reads, writes)
+	if re.search(r'(?<![.\w])(?:state|atomicState)\b(?!\s*\??\.\s*\w)', body):
+		# A dynamic state access (state[...]) or an alias of the state (def s = state) is unknown
+		writes.add("*")
+		return (reads, writes)
+	# Calls to methods that are neither in the app nor known platform methods are unknown (constructors are not calls)
+	for match in re.finditer(r'(?<![\w.$])(\w+)\s*\(', body):
+		name = match.group(1)
+		if name not in methodNames and name not in knownCalls and not re.search(r'\bnew\s+$', body[:match.start()]):
+			writes.add("*")
+			return (reads, writes)
+	# App state: an assignment or a mutator on state.X or on anything nested in it (state.X.y, state.X[k]) writes state.X
+	for match in re.finditer(r'(?<![.\w])(?:state|atomicState)\s*\??\.\s*(\w+)((?:\s*\??\.\s*\w+(?![\w\s]*\()|\s*\[[^\]]*\])*)' +
+							 r'(\s*(?:=(?!=)|\+\+|--|\+=|-=|\*=|/=|%=|<<=?|>>=?|&=|\|=|\^=)|\s*\??\.\s*(?:put|putAll|add|addAll|' +
+							 r'remove|removeAll|retainAll|removeIf|clear|push|pop|set|leftShift|sort|unique|reverse|shuffle|' +
+							 r'putAt|with)\s*[({])?', body):
+		key = appName + ".state." + match.group(1)
+		reads.add(key)
+		if match.group(3) is not None or re.search(r'(?:\+\+|--)\s*$', body[:match.start()]):
+			writes.add(key)
+	# Location
+	if re.search(r'setLocationMode\s*\(|location\.setMode\s*\(|sendLocationEvent\s*\(', body):
+		writes.add("location")
+	if re.search(r'\blocation\.', body):
+		reads.add("location")
+	# Settings and devices
+	referencedGroups = set()
+	for variable, inputType in inputs.items():
+		if not re.search(r'\b' + variable + r'\b', body):
+			continue
+		if inputType.startswith("capability."):
+			group = GetCapabilityGroup(inputType)
+			if group == "*":
+				writes.add("*")
+			else:
+				referencedGroups.add(group)
+				reads.add(group)
+		else:
+			reads.add(appName + ".settings." + variable)
+	# A device command on any referenced device (directly, through an alias, or through a closure) writes all
+	# referenced devices, and a device command on a receiver that cannot be resolved is unknown
+	aliases = ExtractDeviceAliases(body, inputs)
+	for match in re.finditer(r'\b(\w+)\s*(?:\?\.|\*\.|\.)\s*(\w+)\s*\(', body):
+		receiver = match.group(1)
+		method = match.group(2)
+		isDevice = receiver == "it" or receiver in aliases or \
+			(receiver in inputs and inputs[receiver].startswith("capability."))
+		if isDevice and method not in deviceReadMethods:
+			writes.update(referencedGroups)
+		elif not isDevice and method in deviceCommands and receiver not in inputs and \
+			not re.search(r'\b(?:state|atomicState)\s*\.\s*$', body[:match.start()]):
+			writes.add("*")
+			return (reads, writes)
+	return (reads, writes)
+
+def ComputeFootprints(appName, appText):
+	# Return the footprint (read set, write set) of every method including its callees
+	methods = ExtractMethods(appText)
+	if methods is None:
+		return None
+	inputs = ExtractInputs(appText)
+	localFootprints = {}
+	callees = {}
+	for name, body in methods.items():
+		localFootprints[name] = AnalyzeMethodBody(body, appName, inputs, methods.keys())
+		callees[name] = [other for other in methods.keys() if other != name and re.search(r'\b' + other + r'\b', body)]
+	footprints = {}
+	for name in methods.keys():
+		reads = set()
+		writes = set()
+		visited = set()
+		worklist = [name]
+		while worklist:
+			current = worklist.pop()
+			if current in visited:
+				continue
+			visited.add(current)
+			reads.update(localFootprints[current][0])
+			writes.update(localFootprints[current][1])
+			worklist.extend(callees[current])
+		footprints[name] = (reads, writes)
+	return footprints
+
+def FormatFootprint(reads, writes):
+	if "*" in reads or "*" in writes:
+		return "*"
+	return "R=" + ",".join(sorted(reads)) + " W=" + ",".join(sorted(writes))
+
+def WriteEventFootprints():
+	appFootprints = {}
+	appSubscriptions = {}
+	appInputs = {}
+	for appName in ["App1", "App2"]:
+		appFile = open("Extractor/" + appName + "/" + appName + ".groovy", "r")
+		appText = appFile.read()
+		appFile.close()
+		appFootprints[appName] = ComputeFootprints(appName, appText)
+		appSubscriptions[appName] = ExtractSubscriptions(appText)
+		appInputs[appName] = ExtractInputs(appText)
+	eventFootprints = open("eventSimulator/eventFootprints", "w+")
+	eventFootprints.write("# Static R/W footprints: event <number> <app> <footprint> and app <app> <footprint>\n")
+	for eventNumber in range(len(eventNumberTypeList)):
+		eventType = eventNumberTypeList[eventNumber]
+		appName = eventNumberAppList[eventNumber]
+		reads = set()
+		writes = set()
+		if appFootprints["App1"] is None or appFootprints["App2"] is None:
+			writes.add("*")
+		elif eventType.startswith("schedule:"):
+			method = eventType.split(":")[1]
+			if method in appFootprints[appName]:
+				reads.update(appFootprints[appName][method][0])
+				writes.update(appFootprints[appName][method][1])
+			else:
+				writes.add("*")
+		else:
+			eventBase = eventType.split(".")[0]
+			if eventBase in locationEventTypes:
+				writes.add("location")
+			elif eventBase != "app":
+				# The device of the event: the capability of a subscribed variable (the attribute if not found)
+				group = "device." + eventBase
+				for subscribedApp in ["App1", "App2"]:
+					for (variable, attribute, handler) in appSubscriptions[subscribedApp]:
+						if attribute.split(".")[0] == eventBase and variable in appInputs[subscribedApp]:
+							group = GetCapabilityGroup(appInputs[subscribedApp][variable])
+				writes.add(group)
+			# The handlers subscribed to this event in both apps
+			for subscribedApp in ["App1", "App2"]:
+				for (variable, attribute, handler) in appSubscriptions[subscribedApp]:
+					attributeBase = attribute.split(".")[0]
+					if attributeBase == eventBase or (variable == "location" and eventBase in locationEventTypes):
+						if handler in appFootprints[subscribedApp]:
+							reads.update(appFootprints[subscribedApp][handler][0])
+							writes.update(appFootprints[subscribedApp][handler][1])
+						else:
+							writes.add("*")
+		eventFootprints.write("event %d %s %s\n" % (eventNumber, appName, FormatFootprint(reads, writes)))
+	# The footprint of an app is the union of all its methods
+	for appName in ["App1", "App2"]:
+		reads = set()
+		writes = set()
+		if appFootprints[appName] is None:
+			writes.add("*")
+		else:
+			for (methodReads, methodWrites) in appFootprints[appName].values():
+				reads.update(methodReads)
+				writes.update(methodWrites)
+		eventFootprints.write("app %s %s\n" % (appName, FormatFootprint(reads, writes)))
+	eventFootprints.close()
+
 def CheckIfOnlyTouchEvents():
 	#Check and throw an error if it is all touch events
 	#This is called Direct-Direct interaction and we do not model-check for this case
@@ -1520,6 +1811,8 @@ extractedEvents = open("eventSimulator/eventSimulator.groovy", "w+")
 CheckIfOnlyTouchEvents()
 ExtractEvents(extractedEvents)
 extractedEvents.close()
+WriteEventAppMap()
+WriteEventFootprints()
 
 #Save the extracted methods and app1 in a same file to extract information
 extractorFile = open("Extractor/extractorFile.groovy", "w+")
@@ -3,15 +3,27 @@
 import itertools
 import sys
 import os
+import time
+import socket
+import shutil
+import threading
+import uuid
 
 # Helper methods
 # Check the result in the log and print a summary
 def checkResult(logDirName):
 	extractResult = open(logDirName, "r")
 	result = "other errors--PLEASE CHECK!"
+	budgetExhausted = ""
 	
 	for line in extractResult:
-		if "no errors detected" in line:
+		if "Disjoint static footprints:" in line:
+			result = "no conflict (disjoint static footprints)"
+			break
+		elif "Anytime budget exhausted:" in line:
+			# The anytime mode stopped the search: the result is partial unless a conflict is found
+			budgetExhausted = line.split("Anytime budget exhausted:")[1].split("--")[0].strip()
+		elif "no errors detected" in line:
 			result = "no conflict"
 			break
 		elif "java.lang.RuntimeException: Conflict found between the two apps." in line:
@@ -21,6 +33,10 @@ def checkResult(logDirName):
 		#elif "Direct-Direct Interaction detected:" in line:
 		#	result = "direct-direct"
 		#	break
+	extractResult.close()
+	
+	if budgetExhausted != "" and result != "conflict":
+		result = "partial (no conflict within " + budgetExhausted + ")"
 	
 	return result
 
@@ -55,6 +71,30 @@ def changeOption(newString, oldString):
 	fin.write(config)
 	fin.close
 
+# Check the app footprints written by ExtractorScript.py: the apps are disjoint if a footprint is known for
+# both apps and neither app writes what the other app reads or writes
+def hasDisjointFootprints():
+	footprintFile = "eventSimulator/eventFootprints"
+	if not os.path.exists(footprintFile):
+		return False
+	appFootprints = {}
+	extractFootprints = open(footprintFile, "r")
+	for line in extractFootprints:
+		tokens = line.split()
+		if len(tokens) > 0 and tokens[0] == "app":
+			if tokens[2] == "*":
+				appFootprints[tokens[1]] = None
+			else:
+				reads = set(filter(None, tokens[2][2:].split(",")))
+				writes = set(filter(None, tokens[3][2:].split(",")))
+				appFootprints[tokens[1]] = (reads, writes)
+	extractFootprints.close()
+	if appFootprints.get("App1") is None or appFootprints.get("App2") is None:
+		return False
+	(reads1, writes1) = appFootprints["App1"]
+	(reads2, writes2) = appFootprints["App2"]
+	return not (writes1 & (reads2 | writes2)) and not (writes2 & (reads1 | writes1))
+
 # Insert pair name into moreStatistics
 def insertPairName(pairName):
 	print("==> Insert pair name into moreStatistics...\n")
@@ -67,6 +107,144 @@ def insertPairName(pairName):
 	fin.write(config)
 	fin.close
 
+# Sharded mode: runner processes (on one box or on several boxes sharing a directory) claim pairs through lease files
+# Every runner needs its own IoTCheck installation since the extractor, main.jpf, and moreStatistics are per installation
+LEASE_TIMEOUT = int(os.environ.get("IOTCHECK_LEASE_TIMEOUT", "600"))	# Seconds without a heartbeat before a lease expires
+LEASE_HEARTBEAT = max(LEASE_TIMEOUT // 4, 1)
+LEASE_POLL = 30
+leaseHeartbeat = None
+
+def leaseFile(shardDir, pairName):
+	return shardDir + "/leases/" + pairName + ".lease"
+
+def resultFile(shardDir, pairName):
+	return shardDir + "/results/" + pairName + ".result"
+
+# Return the owner token of a lease file (None if it cannot be read)
+def readLeaseToken(lease):
+	try:
+		readLease = open(lease, "r")
+		token = readLease.read().strip()
+		readLease.close()
+		return token
+	except (OSError, IOError):
+		return None
+
+# Claim a pair by creating its lease file atomically; an expired lease (a crashed runner) is taken over by renaming it
+# first: only one runner can rename it, and that runner then competes for the new lease like everyone else
+# Another runner may have replaced the expired lease with a fresh one between the check and the rename: the renamed
+# lease is then put back (unless a newer lease exists), and every lease holds a unique owner token so that the
+# heartbeat and the release never touch a lease that is not theirs
+def claimLease(shardDir, pairName):
+	global leaseHeartbeat
+	lease = leaseFile(shardDir, pairName)
+	try:
+		if time.time() - os.path.getmtime(lease) > LEASE_TIMEOUT:
+			expiredLease = lease + "." + socket.gethostname() + "." + str(os.getpid()) + ".expired"
+			os.rename(lease, expiredLease)
+			if time.time() - os.path.getmtime(expiredLease) <= LEASE_TIMEOUT:
+				# The renamed lease is fresh: put it back without replacing a newer lease, and back off
+				try:
+					os.link(expiredLease, lease)
+				except OSError:
+					pass
+				os.remove(expiredLease)
+				return False
+			os.remove(expiredLease)
+			print("==> Lease of %s has expired, re-claiming it...\n" % pairName)
+	except OSError:
+		pass
+	try:
+		fd = os.open(lease, os.O_CREAT | os.O_EXCL | os.O_WRONLY)
+	except OSError:
+		return False
+	token = socket.gethostname() + " " + str(os.getpid()) + " " + uuid.uuid4().hex
+	os.write(fd, (token + "\n").encode())
+	os.close(fd)
+	# Keep the lease alive while the pair is running (until another runner has taken it over)
+	stopEvent = threading.Event()
+	def renewLease():
+		while not stopEvent.wait(LEASE_HEARTBEAT):
+			# An unreadable lease may be briefly renamed by a runner that puts it back: only another token is a takeover
+			leaseToken = readLeaseToken(lease)
+			if leaseToken is None:
+				continue
+			if leaseToken != token:
+				print("==> Lease of %s has been taken over by another runner...\n" % pairName)
+				return
+			try:
+				os.utime(lease, None)
+			except OSError:
+				pass
+	thread = threading.Thread(target=renewLease)
+	thread.daemon = True
+	thread.start()
+	leaseHeartbeat = (lease, token, stopEvent, thread)
+	return True
+
+# Yield the pairs that this runner has claimed, and wait for the leases of the other runners to finish or expire
+def claimPairs(shardDir, appPairs):
+	while True:
+		isPending = False
+		isClaimed = False
+		for item in appPairs:
+			pairName = item[0] + "--" + item[1]
+			if os.path.exists(resultFile(shardDir, pairName)):
+				continue
+			isPending = True
+			if claimLease(shardDir, pairName):
+				isClaimed = True
+				yield item
+				# Scan again from the first pair
+				break
+		if not isPending:
+			return
+		if not isClaimed:
+			time.sleep(LEASE_POLL)
+
+# Publish the result of a pair atomically (write then rename) and release its lease
+def publishResult(shardDir, pairName, logName, result, statistics):
+	global leaseHeartbeat
+	if os.path.exists(jpfLogDir + logName):
+		shutil.copy(jpfLogDir + logName, shardDir + "/logs/" + logName)
+	tmpName = resultFile(shardDir, pairName) + "." + socket.gethostname() + "." + str(os.getpid())
+	writeResult = open(tmpName, "w")
+	writeResult.write(logName + "\t\t" + result + "\n")
+	writeResult.write(statistics)
+	writeResult.close()
+	os.rename(tmpName, resultFile(shardDir, pairName))
+	(lease, token, stopEvent, thread) = leaseHeartbeat
+	stopEvent.set()
+	thread.join()
+	leaseHeartbeat = None
+	if readLeaseToken(lease) == token:
+		try:
+			os.remove(lease)
+		except OSError:
+			pass
+
+# Merge the results in the order of the pairs (not the order of completion) once all the pairs are done
+# Every runner that finishes tries to merge: the merge is idempotent and each file is replaced atomically
+def mergeResults(shardDir, appPairs):
+	logList = ""
+	statistics = ""
+	for item in appPairs:
+		pairName = item[0] + "--" + item[1]
+		if not os.path.exists(resultFile(shardDir, pairName)):
+			return False
+		readResult = open(resultFile(shardDir, pairName), "r")
+		logList += readResult.readline()
+		statistics += readResult.read()
+		readResult.close()
+	suffix = "." + socket.gethostname() + "." + str(os.getpid())
+	for (fileName, content) in [(shardDir + "/logList", logList), (shardDir + "/moreStatistics", statistics),
+								(jpfLogDir + "logList", logList)]:
+		writeMerged = open(fileName + suffix, "w")
+		writeMerged.write(content)
+		writeMerged.close()
+		os.rename(fileName + suffix, fileName)
+	return True
+
 # Input parameters:
 # - JPF directory
 # - JPF logs directory
@@ -82,6 +260,16 @@ appDir = sys.argv[3]
 isDPOR = sys.argv[4]
 isConflictDetectionActive = sys.argv[5]
 firstList = sys.argv[6]
+# The shard directory is shared by the runners (one subdirectory per log directory, i.e., per pair matrix)
+shardDir = os.environ.get("IOTCHECK_SHARD_DIR", "")
+# Skipping pairs with disjoint static footprints is opt-in until the footprint parser is validated on all the apps
+skipDisjointPairs = os.environ.get("IOTCHECK_SKIP_DISJOINT_PAIRS", "false")
+# Seeding the DPOR independence from the static footprints is opt-in for the same reason
+useStaticFootprints = os.environ.get("IOTCHECK_STATIC_FOOTPRINTS", "false")
+if shardDir != "":
+	shardDir = os.path.join(shardDir, os.path.basename(os.path.normpath(jpfLogDir)))
+	for subDir in ["leases", "results", "logs"]:
+		os.makedirs(shardDir + "/" + subDir, exist_ok=True)
 
 # PART 1: Generate the permutations of app pairs
 print("PHASE 1: Extracting the app pairs from the app lists ...\n")
@@ -133,7 +321,13 @@ isCommentChanged = False
 isDPOROptionChanged = False
 isConflictDetectionOptionChanged = False
 isTimerOptionChanged = False
-for item in appPairs:
+isFootprintOptionChanged = False
+if shardDir == "":
+	pairsToRun = appPairs
+else:
+	print("==> Sharded mode: claiming pairs in %s\n" % shardDir)
+	pairsToRun = claimPairs(shardDir, appPairs)
+for item in pairsToRun:
 
 	# Copy apps into Extractor/App1 and Extractor/App2
 	print("==> First app: %s" % item[0])
@@ -146,9 +340,14 @@ for item in appPairs:
 	os.system("make Runner")
 	error = extractError()
 	pairName = item[0] + "--" + item[1]
+	# Remember where the statistics of this pair start
+	statisticsOffset = os.path.getsize("../jpf-core/moreStatistics")
 	# Insert pair name into moreStatistics
 	insertPairName(pairName)
 	logName = pairName + ".log"
+	# Skip model checking when the conflict tracker is active and the apps cannot conflict
+	if error == "" and isConflictDetectionActive == 'true' and skipDisjointPairs == 'true' and hasDisjointFootprints():
+		error = "Disjoint static footprints: the two apps cannot conflict, we are skipping this pair...\n"
 	if error == "":
 		# Compile
 		os.system("make main")
@@ -173,6 +372,12 @@ for item in appPairs:
 		if isConflictDetectionActive == 'true' and not isConflictDetectionOptionChanged:
 			changeOption('listener=gov.nasa.jpf.listener.DPORStateReducerWithSummary,gov.nasa.jpf.listener.ConflictTracker', 'listener=gov.nasa.jpf.listener.DPORStateReducerWithSummary')
 			isConflictDetectionOptionChanged = True
+		# Seed independence from the static footprints (JPF runs in the JPF directory, so we use an absolute path)
+		if isDPOR == 'true' and isConflictDetectionActive == 'true' and useStaticFootprints == 'true' and \
+				not isFootprintOptionChanged:
+			changeOption('file_output=moreStatistics\nevent_footprints=' + os.path.abspath("eventSimulator/eventFootprints") + '\n',
+						 'file_output=moreStatistics\n')
+			isFootprintOptionChanged = True
 		# Change timeout to 2 hours (120 minutes)
 		if not isTimerOptionChanged:
 			changeOption('timeout=120', 'timeout=30')
@@ -184,5 +389,12 @@ for item in appPairs:
 	result = checkResult(jpfLogDir + logName)
 
 	writeLogList.write(logName + "\t\t" + result + "\n")
+	if shardDir != "":
+		readStatistics = open("../jpf-core/moreStatistics", "r")
+		readStatistics.seek(statisticsOffset)
+		publishResult(shardDir, pairName, logName, result, readStatistics.read())
+		readStatistics.close()
 
 writeLogList.close()
+if shardDir != "" and mergeResults(shardDir, appPairs):
+	print("==> Merged the results of all the pairs into %s\n" % shardDir)
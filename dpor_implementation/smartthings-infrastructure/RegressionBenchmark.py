@@ -0,0 +1,181 @@
+#!/usr/bin/python
+
+import json
+import sys
+import os
+
+# Exploration-regression benchmark: runs a fixed corpus of app pairs and compares the verdict, executions,
+# transitions, unique transitions, states, elapsed time, and max memory of every pair against a checked-in baseline
+#
+# Usage:
+# - RegressionBenchmark.py run [baseline file]
+#   (runs every suite of the baseline with ModelCheck_DPOR.py and compares the results)
+# - RegressionBenchmark.py compare <suite> <log directory> <moreStatistics file> [baseline file]
+#   (compares the logs of a finished run without running JPF)
+# - RegressionBenchmark.py baseline <suite> <log directory> <moreStatistics file> [baseline file]
+#   (records the logs of a run as the baseline of a suite)
+
+BASELINE_FILE = "regressionBaseline.json"
+# Metrics compared against the baseline: a higher value than baseline * (1 + tolerance) is a regression,
+# except for the unique transitions (DPOR coverage) that must stay within the tolerance both ways
+HIGHER_IS_WORSE = ["executions", "transitions", "states", "elapsedTime", "maxMemory"]
+WITHIN_TOLERANCE = ["uniqueTransitions"]
+
+# Helper methods
+# Convert the elapsed time "hh:mm:ss" into seconds
+def toSeconds(elapsedTime):
+	(hours, minutes, seconds) = elapsedTime.split(":")
+	return int(hours) * 3600 + int(minutes) * 60 + int(seconds)
+
+# Extract the verdict of every log from logList
+def extractVerdicts(logDirName):
+	verdicts = {}
+	extractLogList = open(logDirName + "logList", "r")
+	for line in extractLogList:
+		tokens = line.strip().split("\t\t")
+		if len(tokens) == 2:
+			verdicts[tokens[0][:-len(".log")]] = tokens[1]
+	extractLogList.close()
+	return verdicts
+
+# Extract the executions (verbose output of DPORStateReducerWithSummary), states, elapsed time, and max memory from
+# the JPF statistics in a log
+def extractLogStatistics(logFileName):
+	statistics = {}
+	extractLog = open(logFileName, "r")
+	for line in extractLog:
+		if line.startswith("==> DEBUG: Number of executions"):
+			statistics["executions"] = int(line.split(":")[2].strip())
+		elif line.startswith("elapsed time:"):
+			statistics["elapsedTime"] = toSeconds(line.split(":", 1)[1].strip())
+		elif line.startswith("states:"):
+			statistics["states"] = int(line.split("new=")[1].split(",")[0])
+		elif line.startswith("max memory:"):
+			statistics["maxMemory"] = int(line.split(":")[1].strip()[:-len("MB")])
+	extractLog.close()
+	return statistics
+
+# Extract the transitions and unique transitions of every pair from moreStatistics
+def extractMoreStatistics(moreStatisticsFileName):
+	statistics = {}
+	pairName = None
+	extractStatistics = open(moreStatisticsFileName, "r")
+	for line in extractStatistics:
+		line = line.strip()
+		if line == "":
+			continue
+		if not line.startswith("==> DEBUG:"):
+			pairName = line
+			statistics[pairName] = {}
+		elif pairName is not None:
+			(key, value) = line[len("==> DEBUG:"):].split(":", 1)
+			if key.strip() == "Number of transitions":
+				statistics[pairName]["transitions"] = int(value)
+			elif key.strip() == "Number of unique transitions (DPOR)":
+				statistics[pairName]["uniqueTransitions"] = int(value)
+	extractStatistics.close()
+	return statistics
+
+# Collect the metrics of every pair of a finished run
+def collectResults(logDirName, moreStatisticsFileName):
+	results = {}
+	moreStatistics = extractMoreStatistics(moreStatisticsFileName)
+	for (pairName, verdict) in extractVerdicts(logDirName).items():
+		result = {"verdict": verdict}
+		if os.path.exists(logDirName + pairName + ".log"):
+			result.update(extractLogStatistics(logDirName + pairName + ".log"))
+		result.update(moreStatistics.get(pairName, {}))
+		results[pairName] = result
+	return results
+
+# Compare the results of a suite against its baseline and print a report
+# Returns the number of regressions
+def compareResults(suiteName, results, baseline):
+	suite = baseline["suites"][suiteName]
+	tolerances = baseline["tolerances"]
+	numOfRegressions = 0
+	print("==> Suite %s" % suiteName)
+	for pairName in sorted(suite["pairs"]):
+		expected = suite["pairs"][pairName]
+		actual = results.get(pairName)
+		if actual is None:
+			print("    REGRESSION %s: no result" % pairName)
+			numOfRegressions += 1
+			continue
+		if actual["verdict"] != expected["verdict"]:
+			print("    REGRESSION %s: verdict %s (baseline %s)" % (pairName, actual["verdict"], expected["verdict"]))
+			numOfRegressions += 1
+		for metric in HIGHER_IS_WORSE + WITHIN_TOLERANCE:
+			# Metrics that a run does not report (e.g., JPF out of memory) are not compared
+			if metric not in expected or metric not in actual:
+				continue
+			limit = expected[metric] * tolerances[metric]
+			change = actual[metric] - expected[metric]
+			isRegression = change > limit if metric in HIGHER_IS_WORSE else abs(change) > limit
+			status = "REGRESSION" if isRegression else "ok"
+			print("    %-10s %s: %s %d (baseline %d, %+d)" % (status, pairName, metric, actual[metric],
+				expected[metric], change))
+			if isRegression:
+				numOfRegressions += 1
+	return numOfRegressions
+
+# Run a suite through ModelCheck_DPOR.py and collect its results
+# The statistics of this run are the part of moreStatistics written after the start of the run
+def runSuite(suiteName, suite):
+	logDirName = "../logs/regression/" + suiteName + "/"
+	if not os.path.exists(logDirName):
+		os.makedirs(logDirName)
+	moreStatisticsFileName = "../jpf-core/moreStatistics"
+	statisticsOffset = os.path.getsize(moreStatisticsFileName)
+	os.system("cp " + suite["jpfConfig"] + " ../jpf-core/main.jpf")
+	os.system("python3 ModelCheck_DPOR.py ../jpf-core/ " + logDirName + " ../smartapps/ " + suite["isDPOR"] +
+			  " false " + suite["appList1"] + " " + suite["appList2"])
+	readStatistics = open(moreStatisticsFileName, "r")
+	readStatistics.seek(statisticsOffset)
+	writeStatistics = open(logDirName + "moreStatistics", "w")
+	writeStatistics.write(readStatistics.read())
+	writeStatistics.close()
+	readStatistics.close()
+	return collectResults(logDirName, logDirName + "moreStatistics")
+
+def loadBaseline(baselineFileName):
+	readBaseline = open(baselineFileName, "r")
+	baseline = json.load(readBaseline)
+	readBaseline.close()
+	return baseline
+
+def saveBaseline(baseline, baselineFileName):
+	writeBaseline = open(baselineFileName, "w")
+	json.dump(baseline, writeBaseline, indent=4, sort_keys=True)
+	writeBaseline.write("\n")
+	writeBaseline.close()
+
+# Index 0 is always for the Python script itself
+if len(sys.argv) < 2 or sys.argv[1] not in ["run", "compare", "baseline"]:
+	print("Usage: RegressionBenchmark.py run|compare|baseline ...")
+	sys.exit(2)
+command = sys.argv[1]
+if command == "run":
+	baselineFileName = sys.argv[2] if len(sys.argv) > 2 else BASELINE_FILE
+	baseline = loadBaseline(baselineFileName)
+	numOfRegressions = 0
+	for suiteName in sorted(baseline["suites"]):
+		results = runSuite(suiteName, baseline["suites"][suiteName])
+		numOfRegressions += compareResults(suiteName, results, baseline)
+else:
+	suiteName = sys.argv[2]
+	logDirName = os.path.join(sys.argv[3], "")
+	baselineFileName = sys.argv[5] if len(sys.argv) > 5 else BASELINE_FILE
+	baseline = loadBaseline(baselineFileName)
+	results = collectResults(logDirName, sys.argv[4])
+	if command == "baseline":
+		baseline["suites"][suiteName]["pairs"] = results
+		saveBaseline(baseline, baselineFileName)
+		print("==> Recorded %d pairs as the baseline of suite %s" % (len(results), suiteName))
+		sys.exit(0)
+	numOfRegressions = compareResults(suiteName, results, baseline)
+
+if numOfRegressions > 0:
+	print("==> FAILED: %d regressions" % numOfRegressions)
+	sys.exit(1)
+print("==> PASSED")
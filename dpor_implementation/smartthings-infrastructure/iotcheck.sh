@@ -30,6 +30,8 @@ print_usage()
 	echo ""
 	echo -e "\t-g\tglobalStateVariables [-dpor]"
 	echo ""
+	echo -e "\t-r\t(run the exploration-regression benchmark)"
+	echo ""
 	exit 1
 }
 
@@ -123,6 +125,9 @@ then
 elif [[ $1 == '-g' ]]
 then
 	execute_iotcheck_global $2 $3
+elif [[ $1 == '-r' ]]
+then
+	python3 RegressionBenchmark.py run
 else
 	# Print usage info if there is any mistake
 	print_usage
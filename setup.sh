@@ -4,12 +4,18 @@
 cp dpor_implementation/jpf-core/moreStatistics ../iotcheck/jpf-core/
 cp dpor_implementation/jpf-core/DPORStateReducerWithSummary.java ../iotcheck/jpf-core/src/main/gov/nasa/jpf/listener/
 cp dpor_implementation/jpf-core/NumberChoiceFromList.java ../iotcheck/jpf-core/src/main/gov/nasa/jpf/vm/choice/NumberChoiceFromList.java
+cp dpor_implementation/jpf-core/DporIntChoiceGenerator.java ../iotcheck/jpf-core/src/main/gov/nasa/jpf/vm/choice/DporIntChoiceGenerator.java
+cp dpor_implementation/jpf-core/DporTraceReader.java ../iotcheck/jpf-core/src/main/gov/nasa/jpf/listener/
+cp dpor_implementation/jpf-core/ConflictMinimizer.java ../iotcheck/jpf-core/src/main/gov/nasa/jpf/listener/
 cp dpor_implementation/jpf-core/run.sh ../iotcheck/jpf-core/
+cp dpor_implementation/jpf-core/minimize.sh ../iotcheck/jpf-core/
 cp dpor_implementation/smartthings-infrastructure/exampleDPORAppList ../iotcheck/smartthings-infrastructure/appLists/examples/
 cp dpor_implementation/smartthings-infrastructure/exampleDPORAppList2 ../iotcheck/smartthings-infrastructure/appLists/examples/
 cp dpor_implementation/smartthings-infrastructure/ExtractorScript.py ../iotcheck/smartthings-infrastructure/Extractor/ExtractorScript.py
 cp dpor_implementation/smartthings-infrastructure/ModelCheck_DPOR.py ../iotcheck/smartthings-infrastructure/
 cp dpor_implementation/smartthings-infrastructure/iotcheck.sh ../iotcheck/smartthings-infrastructure/iotcheck.sh
+cp dpor_implementation/smartthings-infrastructure/RegressionBenchmark.py ../iotcheck/smartthings-infrastructure/
+cp dpor_implementation/smartthings-infrastructure/regressionBaseline.json ../iotcheck/smartthings-infrastructure/
 
 # Compile JPF
 cd ../iotcheck/jpf-core/